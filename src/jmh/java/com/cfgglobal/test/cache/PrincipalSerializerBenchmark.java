@@ -0,0 +1,103 @@
+package com.cfgglobal.test.cache;
+
+import com.cfgglobal.test.domain.Branch;
+import com.cfgglobal.test.domain.Permission;
+import com.cfgglobal.test.domain.Role;
+import com.cfgglobal.test.domain.RolePermission;
+import com.cfgglobal.test.domain.Rule;
+import com.cfgglobal.test.domain.User;
+import com.cfgglobal.test.security.PrincipalCodec;
+import io.vavr.collection.List;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding a cached principal with the former {@link JdkSerializationRedisSerializer}
+ * against {@link CompactRedisSerializer}. Payload sizes are printed during setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrincipalSerializerBenchmark {
+
+    @Param({"30", "300"})
+    int permissionCount;
+
+    RedisSerializer<Object> jdk = new JdkSerializationRedisSerializer();
+
+    RedisSerializer<Object> compact = new CompactRedisSerializer()
+            .register(PrincipalCodec.TAG, User.class, new PrincipalCodec());
+
+    User user;
+
+    byte[] jdkBytes;
+
+    byte[] compactBytes;
+
+    @Setup
+    public void setup() {
+        Rule rule = new Rule();
+        rule.setName("branch");
+        Role role = new Role()
+                .setName("admin")
+                .setRolePermissions(List.range(0, permissionCount)
+                        .map(i -> {
+                            RolePermission rolePermission = new RolePermission();
+                            rolePermission.setId((long) i);
+                            rolePermission.setPermission(new Permission()
+                                    .setEntity("entity-" + i)
+                                    .setAuthKey("Index entity-" + i)
+                                    .setHttpMethod("GET")
+                                    .setAuthUris("/v[\\d]+/entity-" + i));
+                            rolePermission.setRules(List.of(rule).toJavaList());
+                            return rolePermission;
+                        })
+                        .toJavaList());
+        role.setId(2L);
+        Branch branch = new Branch();
+        branch.setId(3L);
+        branch.setName("Auckland");
+        user = new User();
+        user.setId(1L);
+        user.setUsername("admin");
+        user.setName("Administrator");
+        user.setEmail("admin@example.com");
+        user.setPassword("$2a$10$7EqJtq98hPqEX7fNZaFWoO5rPz1vY2Xq1o5P6u9FZl9aEAd7uxXzS");
+        user.setBranch(branch);
+        user.setRole(role);
+        user.setGrantedAuthorities(List.ofAll(role.getRolePermissions())
+                .<GrantedAuthority>map(rp -> new SimpleGrantedAuthority(rp.getPermission().getAuthKey()))
+                .toJavaList());
+        jdkBytes = jdk.serialize(user);
+        compactBytes = compact.serialize(user);
+        System.out.printf("%n%d permissions: jdk %d bytes, compact %d bytes%n", permissionCount, jdkBytes.length, compactBytes.length);
+    }
+
+    @Benchmark
+    public byte[] jdkEncode() {
+        return jdk.serialize(user);
+    }
+
+    @Benchmark
+    public Object jdkDecode() {
+        return jdk.deserialize(jdkBytes);
+    }
+
+    @Benchmark
+    public byte[] compactEncode() {
+        return compact.serialize(user);
+    }
+
+    @Benchmark
+    public Object compactDecode() {
+        return compact.deserialize(compactBytes);
+    }
+}
@@ -0,0 +1,126 @@
+package com.cfgglobal.test.config.json;
+
+import com.cfgglobal.test.config.app.ApplicationProperties;
+import com.cfgglobal.test.domain.Permission;
+import com.cfgglobal.test.domain.Role;
+import com.cfgglobal.test.domain.RolePermission;
+import com.cfgglobal.test.domain.Rule;
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.vavr.collection.List;
+import io.vavr.jackson.datatype.VavrModule;
+import org.joor.Reflect;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+
+import java.io.OutputStream;
+import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing a {@code Page<Role>} with embedded role permissions, the way every response used to be written, with a new
+ * mapper, modules and mix-ins, against the shared mapper and cached writer of {@link CustomerJsonSerializer}, to a
+ * string and streamed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonSerializerBenchmark {
+
+    @Param({"20", "100"})
+    int pageSize;
+
+    CustomerJsonSerializer serializer = new CustomerJsonSerializer();
+
+    JsonConfig config;
+
+    Page<Role> page;
+
+    @JsonFilter(JacksonJsonFilter.FILTER_ID)
+    static class FilterMixIn {
+    }
+
+    @Setup
+    public void setup() throws Exception {
+        ApplicationProperties.entityScanPackage = new String[]{"com.cfgglobal.test.domain"};
+        Reflect.on(serializer).set("applicationProperties", new ApplicationProperties());
+        config = JsonConfig.create("/v1/role", null, "role-permissions,role-permissions.permission,role-permissions.rules").get();
+        Rule rule = new Rule();
+        rule.setId(1L);
+        rule.setName("branch");
+        page = new PageImpl<>(List.range(0, pageSize)
+                .map(i -> {
+                    Role role = new Role()
+                            .setName("role-" + i)
+                            .setRolePermissions(List.range(0, 30)
+                                    .map(j -> {
+                                        Permission permission = new Permission()
+                                                .setEntity("entity-" + j)
+                                                .setAuthKey("Index entity-" + j)
+                                                .setHttpMethod("GET")
+                                                .setAuthUris("/v[\\d]+/entity-" + j);
+                                        permission.setId((long) j);
+                                        RolePermission rolePermission = new RolePermission();
+                                        rolePermission.setId((long) (i * 100 + j));
+                                        rolePermission.setPermission(permission);
+                                        rolePermission.setRules(List.of(rule).toJavaList());
+                                        return rolePermission;
+                                    })
+                                    .toJavaList());
+                    role.setId((long) i);
+                    role.setVersion(1L);
+                    role.setCreatedAt(ZonedDateTime.now());
+                    return role;
+                })
+                .toJavaList(), new PageRequest(0, pageSize), 1000);
+        System.out.printf("%n%d roles: %d chars%n", pageSize, shared().length());
+    }
+
+    @Benchmark
+    public String perRequestMapper() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        JacksonJsonFilter jacksonFilter = new JacksonJsonFilter();
+        for (JsonConfigItem json : config.getList()) {
+            objectMapper.registerModule(new VavrModule());
+            objectMapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+            objectMapper.registerModule(new Jdk8Module());
+            objectMapper.registerModule(new JavaTimeModule());
+            objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+            jacksonFilter.include(json.getType(), json.getInclude().map(e -> e.getMetadata().getName()).toJavaArray(String.class));
+            jacksonFilter.exclude(json.getType(), json.getExclude().map(e -> e.getMetadata().getName()).toJavaArray(String.class));
+            objectMapper.addMixIn(json.getType(), FilterMixIn.class);
+        }
+        objectMapper.setFilterProvider(jacksonFilter);
+        return objectMapper.writeValueAsString(page);
+    }
+
+    @Benchmark
+    public String shared() throws Exception {
+        return serializer.toJson(config, page);
+    }
+
+    @Benchmark
+    public void streamed(Blackhole blackhole) throws Exception {
+        serializer.write(config, page, new OutputStream() {
+            @Override
+            public void write(int b) {
+                blackhole.consume(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                blackhole.consume(len);
+            }
+        });
+    }
+}
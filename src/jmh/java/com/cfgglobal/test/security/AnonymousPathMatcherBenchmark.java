@@ -0,0 +1,64 @@
+package com.cfgglobal.test.security;
+
+import io.vavr.collection.List;
+import io.vavr.control.Option;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.OrRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Anonymous path check of {@link TokenAuthenticationFilter}: matchers rebuilt per request, as before,
+ * against one {@link AnonymousPathMatcher}. Run with {@code -prof gc} to compare allocation per request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnonymousPathMatcherBenchmark {
+
+    static final String ANONYMOUS_URLS = "/v1/user/register,/v1/user/forget-password,/v1/rate/**";
+
+    static final List<String> DEFAULT_PATHS_TO_SKIP = List.of(
+            "/", "/**/*.html", "/favicon.ico", "/**/*.css", "/**/*.js", "/images/*", "/login", "/logout",
+            "/v1/payment/*", "/v1/code/*", "/sys/*", "/files/*", "/images/mail/*", "/v1/transaction/*/receipt",
+            "/v1/payment/*", "/less/*", "/less/material/*", "/images/payment/*");
+
+    @Param({"/v1/role/12", "/login", "/sys/permission", "/v1/transaction/3/receipt", "/app/main.js"})
+    String path;
+
+    MockHttpServletRequest request;
+
+    RequestMatcher matcher;
+
+    @Setup
+    public void setup() {
+        request = new MockHttpServletRequest("GET", path);
+        request.setServletPath(path);
+        matcher = AnonymousPathMatcher.of(pathsToSkip().toJavaList());
+    }
+
+    @Benchmark
+    public boolean rebuiltPerRequest() {
+        List<RequestMatcher> m = pathsToSkip().map(AntPathRequestMatcher::new);
+        return new OrRequestMatcher(m.toJavaList()).matches(request);
+    }
+
+    @Benchmark
+    public boolean compiledOnce() {
+        return matcher.matches(request);
+    }
+
+    private static List<String> pathsToSkip() {
+        return Option.of(ANONYMOUS_URLS)
+                .map(url -> url.split(","))
+                .map(List::of)
+                .getOrElse(List.empty())
+                .appendAll(DEFAULT_PATHS_TO_SKIP);
+    }
+}
@@ -0,0 +1,99 @@
+package com.cfgglobal.test.security;
+
+import com.cfgglobal.test.domain.Permission;
+import io.vavr.Tuple;
+import io.vavr.Tuple3;
+import io.vavr.collection.List;
+import io.vavr.control.Option;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static com.cfgglobal.test.service.GeneratorService.DIGIT;
+
+/**
+ * Permission lookup of {@link MyInvocationSecurityMetadataSourceService}: the former linear regex scan
+ * against {@link PermissionRouteIndex}, over permissions shaped like the ones {@code /sys/permission} generates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PermissionRouteIndexBenchmark {
+
+    @Param({"60", "600", "3000"})
+    int permissionCount;
+
+    java.util.List<Permission> permissions;
+
+    PermissionRouteIndex index;
+
+    String[][] requests;
+
+    int cursor;
+
+    @Setup
+    public void setup() {
+        int entities = permissionCount / 6;
+        permissions = List.range(0, entities)
+                .flatMap(i -> genPermission("entity-" + i))
+                .toJavaList();
+        index = PermissionRouteIndex.of(permissions);
+        requests = List.range(0, 64)
+                .map(i -> {
+                    String endPoint = "/v1/entity-" + (i * 7919 % entities);
+                    switch (i % 4) {
+                        case 0:
+                            return new String[]{"GET", endPoint};
+                        case 1:
+                            return new String[]{"GET", endPoint + "/" + i};
+                        case 2:
+                            return new String[]{"PUT", endPoint + "/" + i};
+                        default:
+                            return new String[]{"GET", "/v1/unprotected/" + i};
+                    }
+                })
+                .toJavaArray(String[].class);
+    }
+
+    @Benchmark
+    public Permission linearScan() {
+        String[] request = nextRequest();
+        Option<Permission> permissionOpt = List.ofAll(permissions)
+                .filter(resource -> Stream.of(resource.getAuthUris().split(";"))
+                        .anyMatch(uriPatten -> Pattern.matches(uriPatten, request[1])))
+                .headOption();
+        return permissionOpt.getOrNull();
+    }
+
+    @Benchmark
+    public Permission routeIndex() {
+        String[] request = nextRequest();
+        return index.find(request[0], request[1]);
+    }
+
+    private String[] nextRequest() {
+        cursor = (cursor + 1) & 63;
+        return requests[cursor];
+    }
+
+    private static List<Permission> genPermission(String name) {
+        String endPoint = "/" + name;
+        List<Tuple3<String, String, String>> list = List.of(
+                Tuple.of("Index " + name, "GET", "/v" + DIGIT + endPoint),
+                Tuple.of("Create " + name, "POST", "/v" + DIGIT + endPoint),
+                Tuple.of("Read " + name, "GET", "/v" + DIGIT + endPoint + "/" + DIGIT),
+                Tuple.of("Update " + name, "PUT", "/v" + DIGIT + endPoint + "/" + DIGIT),
+                Tuple.of("Update " + name, "PATCH", "/v" + DIGIT + endPoint + "/" + DIGIT),
+                Tuple.of("Delete " + name, "DELETE", "/v" + DIGIT + endPoint + "/" + DIGIT));
+        return list.map(e -> new Permission()
+                .setEntity(name)
+                .setAuthKey(e._1)
+                .setHttpMethod(e._2)
+                .setAuthUris(e._3));
+    }
+}
@@ -23,6 +23,8 @@ public class Filter {
 
     public static final String OPERATOR_LIKE = "LIKE";
 
+    public static final String OPERATOR_STARTS_WITH = "STARTS";
+
     public static final String OPERATOR_EQ = "=";
 
     public static final String OPERATOR_NOT_EQ = "<>";
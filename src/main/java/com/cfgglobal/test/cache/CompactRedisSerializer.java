@@ -0,0 +1,91 @@
+package com.cfgglobal.test.cache;
+
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Value serializer of {@link RedisCacheClient}. A type with a registered {@link ValueCodec} (or a subclass of it)
+ * is written as a one byte tag followed by the codec's encoding, anything else falls back to JDK serialization.
+ * <p>
+ * No tag may start a JDK serialization stream, so values written by {@link JdkSerializationRedisSerializer}
+ * are still read back.
+ */
+public class CompactRedisSerializer implements RedisSerializer<Object> {
+
+    private static final byte JDK_STREAM_MAGIC = (byte) 0xAC;
+
+    private static final byte[] EMPTY_ARRAY = new byte[0];
+
+    private final RedisSerializer<Object> fallback = new JdkSerializationRedisSerializer();
+
+    private final Map<Byte, ValueCodec<?>> codecs = new HashMap<>();
+
+    private final Map<Class<?>, Byte> tags = new HashMap<>();
+
+    public <T> CompactRedisSerializer register(byte tag, Class<T> type, ValueCodec<T> codec) {
+        if (tag == JDK_STREAM_MAGIC || codecs.containsKey(tag)) {
+            throw new IllegalArgumentException("tag " + tag + " is already taken");
+        }
+        codecs.put(tag, codec);
+        tags.put(type, tag);
+        return this;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return EMPTY_ARRAY;
+        }
+        Byte tag = tagOf(value.getClass());
+        if (tag == null) {
+            return fallback.serialize(value);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(tag);
+            ((ValueCodec<Object>) codecs.get(tag)).write(value, out);
+        } catch (IOException e) {
+            throw new SerializationException("Cannot serialize " + value.getClass().getName(), e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes[0] == JDK_STREAM_MAGIC) {
+            return fallback.deserialize(bytes);
+        }
+        ValueCodec<?> codec = codecs.get(bytes[0]);
+        if (codec == null) {
+            throw new SerializationException("Unknown value tag " + bytes[0]);
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 1, bytes.length - 1))) {
+            return codec.read(in);
+        } catch (IOException e) {
+            throw new SerializationException("Cannot deserialize value with tag " + bytes[0], e);
+        }
+    }
+
+    private Byte tagOf(Class<?> type) {
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            Byte tag = tags.get(c);
+            if (tag != null) {
+                return tag;
+            }
+        }
+        return null;
+    }
+}
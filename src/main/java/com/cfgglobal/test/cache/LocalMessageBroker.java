@@ -0,0 +1,26 @@
+package com.cfgglobal.test.cache;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * In-process broker, delivers messages synchronously to every subscriber of the channel.
+ * Stands in for {@link RedisMessageBroker} when several nodes share one JVM, e.g. in tests.
+ */
+public class LocalMessageBroker implements MessageBroker {
+
+    private final Map<String, List<Consumer<String>>> listeners = new ConcurrentHashMap<>();
+
+    @Override
+    public void publish(String channel, String message) {
+        listeners.getOrDefault(channel, new CopyOnWriteArrayList<>()).forEach(listener -> listener.accept(message));
+    }
+
+    @Override
+    public void subscribe(String channel, Consumer<String> listener) {
+        listeners.computeIfAbsent(channel, e -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+}
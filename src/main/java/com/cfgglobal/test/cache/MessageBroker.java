@@ -0,0 +1,12 @@
+package com.cfgglobal.test.cache;
+
+
+import java.util.function.Consumer;
+
+public interface MessageBroker {
+
+    void publish(String channel, String message);
+
+    void subscribe(String channel, Consumer<String> listener);
+
+}
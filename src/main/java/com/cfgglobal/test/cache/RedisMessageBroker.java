@@ -0,0 +1,43 @@
+package com.cfgglobal.test.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+@Component
+public class RedisMessageBroker implements MessageBroker {
+    private static Logger logger = LoggerFactory.getLogger(RedisMessageBroker.class);
+
+    @Autowired
+    private StringRedisTemplate template;
+
+    @Autowired
+    @Qualifier("messageBrokerListenerContainer")
+    private RedisMessageListenerContainer container;
+
+    @Override
+    public void publish(String channel, String message) {
+        try {
+            template.convertAndSend(channel, message);
+        } catch (Exception e) {
+            logger.error("Publish message [{}] to channel [{}] failure", message, channel, e);
+        }
+    }
+
+    @Override
+    public void subscribe(String channel, Consumer<String> listener) {
+        container.addMessageListener((message, pattern) -> {
+            String body = new String(message.getBody(), StandardCharsets.UTF_8);
+            logger.debug("Receive message [{}] from channel [{}]", body, channel);
+            listener.accept(body);
+        }, new ChannelTopic(channel));
+    }
+}
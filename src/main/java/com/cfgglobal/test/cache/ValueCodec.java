@@ -0,0 +1,15 @@
+package com.cfgglobal.test.cache;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Compact binary encoding of one cached type, see {@link CompactRedisSerializer}.
+ */
+public interface ValueCodec<T> {
+
+    void write(T value, DataOutput out) throws IOException;
+
+    T read(DataInput in) throws IOException;
+}
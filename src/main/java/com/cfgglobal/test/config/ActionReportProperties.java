@@ -3,6 +3,12 @@ package com.cfgglobal.test.config;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 @ConfigurationProperties("mvc.action.report")
 @Data
 public class ActionReportProperties {
@@ -10,5 +16,49 @@ public class ActionReportProperties {
     private String module;
     private boolean switcher = false;
     private boolean visitRecord = false;
+    /**
+     * Bytes of the request body kept in the visit record, only for the listed content types.
+     */
+    private int requestBodyLimit = 2048;
+    private List<String> requestBodyTypes = new ArrayList<>(Arrays.asList(
+            "application/json", "application/xml", "text/xml", "text/plain", "application/x-www-form-urlencoded"));
+    /**
+     * Records waiting to be written, normal requests may only use three quarters of it.
+     */
+    private int visitRecordBufferSize = 8192;
+    private int visitRecordBatchSize = 200;
+    /**
+     * Milliseconds a record may wait for its batch to fill up.
+     */
+    private long visitRecordFlushInterval = 1000;
+    /**
+     * Share of normal requests that is recorded, slow and failed requests are always recorded.
+     */
+    private double visitRecordSampleRate = 1.0;
+    /**
+     * Milliseconds after which a request counts as slow.
+     */
+    private long visitRecordSlowThreshold = 1000;
+    /**
+     * Days raw visit records, minute rollups and hour rollups are kept, 0 keeps them forever. Raw records are kept
+     * forever unless the application sets a retention, they may predate the rollups.
+     */
+    private int visitRecordRetention = 0;
+    private int visitRollupMinuteRetention = 7;
+    private int visitRollupHourRetention = 400;
+    /**
+     * Initial state of the allocation and cpu accounting of requests, switched at runtime by /sys/metrics/resources.
+     */
+    private boolean resourceAccounting = false;
     private boolean firewall = false;
+    /**
+     * memory: per node, redis: shared by all nodes
+     */
+    private String firewallStore = "memory";
+    private long firewallLimit = 500;
+    private long firewallWindow = 60;
+    /**
+     * Limits of single keys, e.g. {@code user:42} or {@code ip:10.0.0.1}, overriding firewallLimit.
+     */
+    private Map<String, Long> firewallLimits = new HashMap<>();
 }
\ No newline at end of file
@@ -5,6 +5,7 @@ import com.cfgglobal.test.domain.convoerters.CustomerConverter;
 import com.cfgglobal.test.domain.convoerters.ZonedDateTimeConverter;
 import com.cfgglobal.test.web.interceptors.ActionReportInterceptor;
 import com.cfgglobal.test.web.interceptors.JsonRenderInterceptor;
+import com.cfgglobal.test.web.interceptors.LatencyInterceptor;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
@@ -47,6 +48,9 @@ public class WebConfig extends WebMvcConfigurerAdapter {
     @Autowired
     ActionReportInterceptor actionReportInterceptor;
 
+    @Autowired
+    LatencyInterceptor latencyInterceptor;
+
 
     @Override
     public void addArgumentResolvers(List<HandlerMethodArgumentResolver> argumentResolvers) {
@@ -67,6 +71,7 @@ public class WebConfig extends WebMvcConfigurerAdapter {
 
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(latencyInterceptor);
         registry.addInterceptor(jsonRenderInterceptor);
         //   registry.addInterceptor(globalParameterInterceptor);
         registry.addInterceptor(actionReportInterceptor);
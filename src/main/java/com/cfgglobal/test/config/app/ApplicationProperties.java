@@ -1,9 +1,13 @@
 package com.cfgglobal.test.config.app;
 
 import lombok.Data;
+import lombok.NoArgsConstructor;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Data
 @ConfigurationProperties("app")
@@ -35,6 +39,38 @@ public class ApplicationProperties {
 
     Jwt jwt;
 
+    NearCache nearCache = new NearCache();
+
+    Profile profile = new Profile();
+
+    Admission admission = new Admission();
+
+    Json json = new Json();
+
+
+    @Data
+    public static class Json {
+        /**
+         * How entity associations that a response did not ask for through embedded are written when they have not
+         * been loaded yet.
+         */
+        LazyAssociations lazyAssociations = LazyAssociations.LOAD;
+    }
+
+    public enum LazyAssociations {
+        /**
+         * Load and write them, one query per association and row.
+         */
+        LOAD,
+        /**
+         * Leave them out.
+         */
+        SKIP,
+        /**
+         * Write entities as {@code {"id": ...}}, leave collections out.
+         */
+        STUB
+    }
 
     @Data
     public static class Jwt {
@@ -44,5 +80,74 @@ public class ApplicationProperties {
         String cookie = "AUTH-TOKEN";
         String param = "token";
         String anonymousUrls;
+        Long claimsCacheSize = 10000L;
+    }
+
+    @Data
+    public static class NearCache {
+        Long size = 10000L;
+        Long ttl = 60L;
+    }
+
+    /**
+     * Flight recordings of /sys/profile, kept on local disk.
+     */
+    @Data
+    public static class Profile {
+        String directory = System.getProperty("java.io.tmpdir") + "/access-control-profile";
+        Integer maxDuration = 300;
+        Integer keep = 10;
+    }
+
+    /**
+     * Concurrency limits in front of the controllers, by endpoint group. A request belongs to the first group with a
+     * matching path, e.g. {@code /v1/excel/**} or {@code GET /v1/*}, and to the default group otherwise.
+     */
+    @Data
+    public static class Admission {
+        Boolean enabled = true;
+        /**
+         * Seconds a rejected client is asked to wait.
+         */
+        Integer retryAfter = 1;
+        Group defaultGroup = new Group(null, 20, 40, 200L, true);
+        Map<String, Group> groups = new LinkedHashMap<>();
+
+        {
+            groups.put("auth", new Group(Arrays.asList("/auth/**", "/login", "/logout"), 20, 50, 500L, false));
+            groups.put("system", new Group(Arrays.asList("/sys/**", "/druid/**"), 4, 4, 1000L, false));
+            groups.put("heavy", new Group(Arrays.asList("/v1/excel/**", "/files/**", "/v1/attachment/**", "/v1/visit-record/**", "/v1/visit-rollup/**"), 4, 8, 2000L, false));
+            groups.put("reference", new Group(Arrays.asList("GET /v1/code/**", "GET /v1/rule/**", "GET /v1/permission/*"), 10, 20, 200L, false));
+            groups.put("list", new Group(Arrays.asList("GET /v1/*"), 10, 20, 500L, true));
+        }
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class Group {
+        List<String> paths;
+        /**
+         * Requests running at once, the upper bound of an adaptive limit.
+         */
+        Integer limit = 20;
+        Integer queue = 40;
+        /**
+         * Milliseconds a request may wait in the queue.
+         */
+        Long queueTimeout = 200L;
+        /**
+         * Lowers the limit while requests take longer than latencyThreshold milliseconds, and raises it back.
+         */
+        Boolean adaptive = false;
+        Integer minLimit = 2;
+        Long latencyThreshold = 1000L;
+
+        public Group(List<String> paths, Integer limit, Integer queue, Long queueTimeout, Boolean adaptive) {
+            this.paths = paths;
+            this.limit = limit;
+            this.queue = queue;
+            this.queueTimeout = queueTimeout;
+            this.adaptive = adaptive;
+        }
     }
 }
@@ -5,15 +5,28 @@ import org.springframework.data.domain.AuditorAware;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
 import java.util.Optional;
 
+/**
+ * The current user as a reference of the persistence context, the principal itself may have been decoded from the
+ * principal cache and is not an entity Hibernate knows.
+ */
 @Component
 public class SecurityAuditor implements AuditorAware<User> {
 
+    @PersistenceContext
+    private EntityManager entityManager;
+
     @Override
     public User getCurrentAuditor() {
         return Optional.ofNullable(SecurityContextHolder.getContext().getAuthentication())
-                .map(e -> (User) e.getPrincipal()).orElse(null);
+                .map(e -> e.getPrincipal())
+                .filter(User.class::isInstance)
+                .map(User.class::cast)
+                .map(user -> user.getId() == null ? user : entityManager.getReference(User.class, user.getId()))
+                .orElse(null);
 
     }
 }
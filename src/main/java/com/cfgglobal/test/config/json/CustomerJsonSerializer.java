@@ -2,68 +2,166 @@ package com.cfgglobal.test.config.json;
 
 import com.cfgglobal.test.config.app.ApplicationProperties;
 import com.cfgglobal.test.domain.User;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.introspect.Annotated;
+import com.fasterxml.jackson.databind.introspect.AnnotatedClass;
+import com.fasterxml.jackson.databind.introspect.JacksonAnnotationIntrospector;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.querydsl.core.types.Path;
+import io.vavr.Tuple;
+import io.vavr.Tuple2;
+import io.vavr.collection.HashMap;
+import io.vavr.collection.HashSet;
 import io.vavr.collection.List;
+import io.vavr.collection.Map;
+import io.vavr.collection.Set;
 import io.vavr.control.Option;
 import io.vavr.jackson.datatype.VavrModule;
 import org.joor.Reflect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Serializes responses with one shared, fully configured {@link ObjectMapper}. The fields of each class written for a
+ * {@link JsonConfig} are decided by a {@link JacksonJsonFilter} at write time instead of mix-ins, so the mapper's
+ * serializers are built once and reused by every request.
+ * <p>
+ * The immutable {@link ObjectWriter} of a projection, the include and exclude field names per class, is cached.
+ */
+@Component
+@EnableConfigurationProperties(ApplicationProperties.class)
 public class CustomerJsonSerializer {
 
+    private static final int WRITER_CACHE_SIZE = 1024;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
 
-    private ObjectMapper objectMapper = new ObjectMapper();
-    private JacksonJsonFilter jacksonFilter = new JacksonJsonFilter();
+    private final ObjectMapper objectMapper = createObjectMapper();
 
-    public void filter(Class<?> clazz, List<Path> include, List<Path> exclude) {
+    private final Cache<Tuple2<Map<Class<?>, Set<String>>, Map<Class<?>, Set<String>>>, ObjectWriter> writers = CacheBuilder.newBuilder()
+            .maximumSize(WRITER_CACHE_SIZE)
+            .build();
+
+    static ObjectMapper createObjectMapper() {
+        ObjectMapper objectMapper = new ObjectMapper();
         objectMapper.registerModule(new VavrModule());
-        objectMapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
         objectMapper.registerModule(new Jdk8Module());
         objectMapper.registerModule(new JavaTimeModule());
-        // objectMapper.findAndRegisterModules();
+        objectMapper.registerModule(new SimpleModule().setSerializerModifier(new JacksonJsonFilter.PropertyIndex()));
         objectMapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+        objectMapper.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
         objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-        if (clazz == null) {
-            return;
-        }
-
-        jacksonFilter.include(clazz, include.map(e -> e.getMetadata().getName()).toJavaArray(String.class));
-
-        jacksonFilter.exclude(clazz, exclude.map(e -> e.getMetadata().getName()).toJavaArray(String.class));
-
-        objectMapper.addMixIn(clazz, jacksonFilter.getClass());
+        objectMapper.setAnnotationIntrospector(new JacksonAnnotationIntrospector() {
+            @Override
+            public Object findFilterId(Annotated a) {
+                Object id = super.findFilterId(a);
+                if (id == null && a instanceof AnnotatedClass && JacksonJsonFilter.isFiltered(a.getRawType())) {
+                    return JacksonJsonFilter.FILTER_ID;
+                }
+                return id;
+            }
+        });
+        objectMapper.setFilterProvider(new SimpleFilterProvider().setDefaultFilter(SimpleBeanPropertyFilter.serializeAll()));
+        return objectMapper;
     }
 
-    public String toJson(Object object) throws JsonProcessingException {
-        objectMapper.setFilterProvider(jacksonFilter);
-        return objectMapper.writeValueAsString(object);
+    public String toJson(JsonConfig config, Object object) throws JsonProcessingException {
+        return writer(config).writeValueAsString(object);
     }
 
-    public void filter(JsonConfigItem json) {
-        Class<?> type = json.getType();
-        Option<Class> dto = JsonConfig.getDto(type);
-        List<Path> include = json.include;
-        if (type == User.class) {
-            Class extendedUser = Reflect.on(ApplicationProperties.myUserClass).get();
-            include = include.appendAll(JsonConfig.firstLevel(extendedUser).map(MockPath::create));
+    /**
+     * Writes UTF-8 json straight to the stream through a generator with a recycled buffer, without building the
+     * whole body in memory first. The stream is flushed but left open.
+     * <p>
+     * When serialization fails the open arrays and objects are not closed and the stream is not flushed, as in
+     * {@link ObjectMapper#writeValue(OutputStream, Object)}, so a broken body never reads as complete json and an
+     * uncommitted response can still be reset to an error.
+     */
+    public void write(JsonConfig config, Object object, OutputStream out) throws IOException {
+        ObjectWriter writer = writer(config);
+        JsonGenerator generator = writer.getFactory().createGenerator(out, JsonEncoding.UTF8);
+        boolean closed = false;
+        try {
+            writer.writeValue(generator, object);
+            closed = true;
+            generator.close();
+        } finally {
+            if (!closed) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+                generator.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+                try {
+                    generator.close();
+                } catch (IOException ignored) {
+                }
+            }
         }
-        if (dto.isDefined()) {
-            List<Path> dtoFields = JsonConfig.firstLevel(dto.get()).map(MockPath::create);
-            this.filter(dto.get(), include.appendAll(dtoFields), json.exclude);
-            this.filter(json.type, include.appendAll(dtoFields), json.exclude);
-        } else {
-            this.filter(json.type, include, json.exclude);
+    }
+
+    public ObjectWriter writer(JsonConfig config) {
+        Tuple2<Map<Class<?>, Set<String>>, Map<Class<?>, Set<String>>> projection = projection(config.getList());
+        try {
+            return writers.get(projection, () -> {
+                JacksonJsonFilter filter = new JacksonJsonFilter(applicationProperties.getJson().getLazyAssociations());
+                projection._1.forEach((type, fields) -> filter.include(type, fields.toJavaArray(String.class)));
+                projection._2.forEach((type, fields) -> filter.exclude(type, fields.toJavaArray(String.class)));
+                return objectMapper.writer(filter);
+            });
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            throw new IllegalStateException(e.getCause());
         }
+    }
 
-        if (type == User.class) {
-            Class extendedUser = Reflect.on(ApplicationProperties.myUserClass).get();
-            this.filter(extendedUser, include, json.exclude);
+    /**
+     * The include and exclude field names per class of a config, the same for configs that render the same json.
+     */
+    static Tuple2<Map<Class<?>, Set<String>>, Map<Class<?>, Set<String>>> projection(List<JsonConfigItem> items) {
+        Tuple2<Map<Class<?>, Set<String>>, Map<Class<?>, Set<String>>> projection = Tuple.of(HashMap.empty(), HashMap.empty());
+        for (JsonConfigItem json : items) {
+            Class<?> type = json.getType();
+            Option<Class> dto = JsonConfig.getDto(type);
+            List<Path> include = json.include;
+            if (type == User.class && ApplicationProperties.myUserClass != null) {
+                Class extendedUser = Reflect.on(ApplicationProperties.myUserClass).get();
+                include = include.appendAll(JsonConfig.firstLevel(extendedUser).map(MockPath::create));
+                projection = add(projection, extendedUser, include, json.exclude);
+            }
+            if (dto.isDefined()) {
+                List<Path> dtoFields = JsonConfig.firstLevel(dto.get()).map(MockPath::create);
+                projection = add(projection, dto.get(), include.appendAll(dtoFields), json.exclude);
+                include = include.appendAll(dtoFields);
+            }
+            projection = add(projection, type, include, json.exclude);
         }
+        return projection;
+    }
+
+    private static Tuple2<Map<Class<?>, Set<String>>, Map<Class<?>, Set<String>>> add(Tuple2<Map<Class<?>, Set<String>>, Map<Class<?>, Set<String>>> projection,
+                                                                                         Class<?> type, List<Path> include, List<Path> exclude) {
+        return projection.map(
+                includes -> includes.put(type, names(include), Set::union),
+                excludes -> excludes.put(type, names(exclude), Set::union));
+    }
 
+    private static Set<String> names(List<Path> paths) {
+        return HashSet.ofAll(paths.map(e -> e.getMetadata().getName()));
     }
-}
\ No newline at end of file
+}
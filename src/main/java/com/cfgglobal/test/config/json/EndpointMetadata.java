@@ -0,0 +1,107 @@
+package com.cfgglobal.test.config.json;
+
+import com.cfgglobal.test.config.app.ApplicationProperties;
+import com.cfgglobal.test.domain.User;
+import com.google.common.base.CaseFormat;
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.dsl.EntityPathBase;
+import com.querydsl.core.types.dsl.ListPath;
+import io.vavr.Tuple;
+import io.vavr.Tuple2;
+import io.vavr.collection.LinkedHashMap;
+import io.vavr.collection.List;
+import io.vavr.collection.Map;
+import io.vavr.control.Option;
+import io.vavr.control.Try;
+import org.joor.Reflect;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+/**
+ * What {@link JsonConfig} needs to know about the entity behind an endpoint segment, e.g. {@code role-permission}:
+ * its class, QueryDSL path, first level paths and the paths that can be embedded with the endpoint each of them
+ * leads to. Resolved once by reflection, immutable afterwards.
+ */
+public final class EndpointMetadata {
+
+    private final Class type;
+
+    private final EntityPathBase path;
+
+    private final List<Path> firstLevel;
+
+    private final List<Path> firstLevelWithAudit;
+
+    /**
+     * Public paths of the Q object by field name, with the endpoint segment of the type they lead to.
+     */
+    private final Map<String, Tuple2<Path, String>> paths;
+
+    private EndpointMetadata(Class type, EntityPathBase path) {
+        this.type = type;
+        this.path = path;
+        this.firstLevel = JsonConfig.firstLevel(path, false);
+        this.firstLevelWithAudit = JsonConfig.firstLevel(path, true);
+        Map<String, Tuple2<Path, String>> paths = publicPaths(path);
+        if (type == User.class && ApplicationProperties.myUserClass != null) {
+            // paths of the application's user class can be embedded on user
+            Class userClass = Reflect.on(ApplicationProperties.myUserClass).get();
+            paths = publicPaths(JsonConfig.toQ(userClass)).merge(paths, (extended, user) -> user);
+        }
+        this.paths = paths;
+    }
+
+    /**
+     * Resolves the class and Q object of an endpoint segment the way {@link JsonConfig#endpoints(String)} does.
+     */
+    public static Option<EndpointMetadata> resolve(String endpoint) {
+        return JsonConfig.endpoints(endpoint).map(e -> new EndpointMetadata(e._1, e._2));
+    }
+
+    private static Map<String, Tuple2<Path, String>> publicPaths(Object q) {
+        Map<String, Tuple2<Path, String>> paths = LinkedHashMap.empty();
+        for (Field field : q.getClass().getFields()) {
+            if (Modifier.isStatic(field.getModifiers()) || !Path.class.isAssignableFrom(field.getType())) {
+                continue;
+            }
+            Path value = Try.of(() -> (Path) field.get(q)).getOrNull();
+            if (value != null) {
+                paths = paths.put(field.getName(), Tuple.of(value, segment(value)));
+            }
+        }
+        return paths;
+    }
+
+    private static String segment(Path path) {
+        Class next = path instanceof ListPath ? Reflect.on(path).get("elementType") : path.getType();
+        return CaseFormat.UPPER_CAMEL.to(CaseFormat.LOWER_HYPHEN, next.getSimpleName());
+    }
+
+    public Class getType() {
+        return type;
+    }
+
+    public EntityPathBase getPath() {
+        return path;
+    }
+
+    public List<Path> firstLevel(boolean audit) {
+        return audit ? firstLevelWithAudit : firstLevel;
+    }
+
+    /**
+     * The path of a field of the Q object, with the endpoint segment of its type.
+     */
+    public Option<Tuple2<Path, String>> path(String name) {
+        return paths.get(name);
+    }
+
+    /**
+     * Names of the associations, the paths that can be embedded.
+     */
+    public List<String> embeddable() {
+        return paths.filterValues(p -> p._1 instanceof ListPath || p._1 instanceof EntityPath).keySet().toList();
+    }
+}
@@ -0,0 +1,92 @@
+package com.cfgglobal.test.config.json;
+
+import com.cfgglobal.test.config.app.ApplicationProperties;
+import com.google.common.base.CaseFormat;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.vavr.Tuple;
+import io.vavr.Tuple3;
+import io.vavr.collection.HashMap;
+import io.vavr.collection.List;
+import io.vavr.collection.Map;
+import io.vavr.control.Option;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.metamodel.ManagedType;
+import java.util.Collection;
+import java.util.stream.Collectors;
+
+/**
+ * Metadata of every endpoint segment, resolved once at startup from the JPA metamodel instead of by reflection on
+ * every request, and the {@link JsonConfig}s built from it by (endpoint, fields, embedded).
+ * <p>
+ * Cached configs are shared by all requests asking for the same combination and must not be modified.
+ */
+@Slf4j
+@Component
+public class EndpointRegistry {
+
+    private static final int CONFIG_CACHE_SIZE = 1024;
+
+    private final Cache<Tuple3<String, String, String>, Option<JsonConfig>> configs = CacheBuilder.newBuilder()
+            .maximumSize(CONFIG_CACHE_SIZE)
+            .build();
+
+    private volatile Map<String, EndpointMetadata> endpoints = HashMap.empty();
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @PostConstruct
+    public void init() {
+        register(entityManagerFactory.getMetamodel().getManagedTypes().stream()
+                .map(ManagedType::getJavaType)
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Resolves the endpoint segments of the given types that lie in {@link ApplicationProperties#entityScanPackage},
+     * or of all of them if it is not set.
+     */
+    public void register(Collection<? extends Class<?>> types) {
+        List<String> packages = ApplicationProperties.entityScanPackage == null ? null : List.of(ApplicationProperties.entityScanPackage);
+        Map<String, EndpointMetadata> endpoints = HashMap.empty();
+        for (Class<?> type : types) {
+            if (type.getPackage() == null || packages != null && !packages.contains(type.getPackage().getName())) {
+                continue;
+            }
+            String segment = CaseFormat.UPPER_CAMEL.to(CaseFormat.LOWER_HYPHEN, type.getSimpleName());
+            if (!endpoints.containsKey(segment)) {
+                Option<EndpointMetadata> metadata = EndpointMetadata.resolve(segment);
+                if (metadata.isDefined()) {
+                    endpoints = endpoints.put(segment, metadata.get());
+                }
+            }
+        }
+        this.endpoints = endpoints;
+        configs.invalidateAll();
+        log.info("{} json endpoints registered", endpoints.size());
+    }
+
+    public Option<EndpointMetadata> find(String endpoint) {
+        return endpoints.get(endpoint);
+    }
+
+    /**
+     * Same as {@link JsonConfig#create(String, String, String)}, built once per endpoint, fields and embedded.
+     * Invalid combinations are not cached, they throw every time.
+     */
+    public Option<JsonConfig> jsonConfig(String uri, String fields, String embedded) {
+        Tuple3<String, String, String> key = Tuple.of(JsonConfig.getRootEndpoint(uri), fields, embedded);
+        Option<JsonConfig> config = configs.getIfPresent(key);
+        if (config == null) {
+            config = JsonConfig.create(this::find, uri, fields, embedded);
+            configs.put(key, config);
+        }
+        return config;
+    }
+}
@@ -1,11 +1,15 @@
 package com.cfgglobal.test.config.json;
 
+import com.cfgglobal.test.config.app.ApplicationProperties.LazyAssociations;
 import com.cfgglobal.test.domain.BaseEntity;
-import com.cfgglobal.test.domain.User;
-import com.fasterxml.jackson.annotation.JsonFilter;
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.PropertyName;
+import com.fasterxml.jackson.databind.SerializationConfig;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.ser.BeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.BeanPropertyWriter;
+import com.fasterxml.jackson.databind.ser.BeanSerializerModifier;
 import com.fasterxml.jackson.databind.ser.FilterProvider;
 import com.fasterxml.jackson.databind.ser.PropertyFilter;
 import com.fasterxml.jackson.databind.ser.PropertyWriter;
@@ -18,15 +22,52 @@ import org.hibernate.proxy.LazyInitializer;
 import org.joor.Reflect;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+/**
+ * Decides which properties of the classes in a projection are written. Serializers of filtered classes carry
+ * {@link #FILTER_ID}, classes outside the projection are written in full.
+ * <p>
+ * The decision is compiled once per class: {@link PropertyIndex} numbers the properties of every filtered serializer,
+ * and the filter of a class keeps one entry per property number, so writing a field only reads an array.
+ * <p>
+ * Associations written without being asked for, by an exclude config or a class outside the projection, are not
+ * loaded for the response unless {@link LazyAssociations#LOAD}.
+ */
 @Slf4j
 @SuppressWarnings("deprecation")
-@JsonFilter("JacksonFilter")
 public class JacksonJsonFilter extends FilterProvider {
 
+    public static final String FILTER_ID = "JacksonFilter";
+
+    private static final byte UNKNOWN = 0;
+    private static final byte WRITE = 1;
+    private static final byte SKIP = 2;
+    private static final byte WRITE_IF_LOADED = 3;
+
+    private final LazyAssociations lazyAssociations;
+
     Map<Class<?>, Set<String>> includeMap = new HashMap<>();
     Map<Class<?>, Set<String>> filterMap = new HashMap<>();
 
+    private final ConcurrentMap<Class<?>, PropertyFilter> compiled = new ConcurrentHashMap<>();
+
+    public JacksonJsonFilter() {
+        this(LazyAssociations.LOAD);
+    }
+
+    public JacksonJsonFilter(LazyAssociations lazyAssociations) {
+        this.lazyAssociations = lazyAssociations;
+    }
+
+    /**
+     * Entities and their dtos are the only types a {@link JsonConfig} can refer to.
+     */
+    public static boolean isFiltered(Class<?> type) {
+        return BaseEntity.class.isAssignableFrom(type) || type.getSimpleName().endsWith("Dto");
+    }
+
     public void include(Class<?> type, String[] fields) {
         addToMap(includeMap, type, fields);
     }
@@ -39,6 +80,7 @@ public class JacksonJsonFilter extends FilterProvider {
         Set<String> fieldSet = map.getOrDefault(type, new HashSet<>());
         fieldSet.addAll(Arrays.asList(fields));
         map.put(type, fieldSet);
+        compiled.clear();
     }
 
     @Override
@@ -48,49 +90,162 @@ public class JacksonJsonFilter extends FilterProvider {
 
     @Override
     public PropertyFilter findPropertyFilter(Object filterId, Object valueToFilter) {
+        return compiled.computeIfAbsent(valueToFilter.getClass(), this::compile);
+    }
 
-        return new SimpleBeanPropertyFilter() {
-
-            @Override
-            public void serializeAsField(Object pojo, JsonGenerator jgen, SerializerProvider prov, PropertyWriter writer)
-                    throws Exception {
-                String name = writer.getName();
-                if (apply(pojo.getClass(), name)) {
-                   /* System.out.println(valueToFilter.getClass());
-                    Object obj = Reflect.on(pojo).get(name);
-                    if (isLazy(obj)) {
-                        System.out.println("lazy");
-                        return;
-                    }*/
-
-                    writer.serializeAsField(pojo, jgen, prov);
-                } else if (!jgen.canOmitFields()) {
-                    writer.serializeAsOmittedField(pojo, jgen, prov);
-                }
-            }
-        };
+    private PropertyFilter compile(Class<?> type) {
+        Class<?> configured = configuredType(type);
+        if (configured == null) {
+            return lazyAssociations == LazyAssociations.LOAD ? SimpleBeanPropertyFilter.serializeAll() : new CompiledFilter(null, null);
+        }
+        return new CompiledFilter(includeMap.getOrDefault(configured, Collections.emptySet()),
+                filterMap.getOrDefault(configured, Collections.emptySet()));
     }
 
-    public boolean apply(Class<?> type, String name) {
+    /**
+     * The class of the projection a class is written as, null if it is not in the projection.
+     */
+    private Class<?> configuredType(Class<?> type) {
         String simpleName = type.getSimpleName();
         if (simpleName.endsWith("Dto")) {
             type = Reflect.on(BaseEntity.class.getPackage().getName() + "." + StringUtils.substringBefore(simpleName, "Dto")).get();
         }
-        if (type.getSuperclass() == User.class && includeMap.get(type.getSuperclass()) != null) {
-            type = User.class;
+        while (type != null && !includeMap.containsKey(type) && !filterMap.containsKey(type)) {
+            // subclasses, e.g. proxies or the application's user class, are filtered as the configured class
+            type = type.getSuperclass();
         }
-        Set<String> includeFields = includeMap.get(type);
-        Set<String> filterFields = filterMap.get(type);
+        return type;
+    }
+
+    public boolean apply(Class<?> type, String name) {
+        Class<?> configured = configuredType(type);
+        return configured == null || apply(includeMap.getOrDefault(configured, Collections.emptySet()),
+                filterMap.getOrDefault(configured, Collections.emptySet()), name);
+    }
+
+    private static boolean apply(Set<String> includeFields, Set<String> filterFields, String name) {
         if (!includeFields.isEmpty() && includeFields.contains(name)) {
             return true;
         } else if (!filterFields.isEmpty() && !filterFields.contains(name)) {
             return true;
-        } else if (!includeFields.isEmpty() && !filterFields.isEmpty()) {
-            //return true;
         }
         return false;
     }
 
+    /**
+     * The filter of one class, of all its properties when include and exclude are null. Decisions are filled in on
+     * first use, concurrent writers of the same entry compute the same value.
+     */
+    private class CompiledFilter extends SimpleBeanPropertyFilter {
+
+        private final Set<String> includeFields;
+
+        private final Set<String> filterFields;
+
+        private volatile byte[] decisions;
+
+        CompiledFilter(Set<String> includeFields, Set<String> filterFields) {
+            this.includeFields = includeFields;
+            this.filterFields = filterFields;
+        }
+
+        @Override
+        public void serializeAsField(Object pojo, JsonGenerator jgen, SerializerProvider prov, PropertyWriter writer)
+                throws Exception {
+            byte decision = decision(writer);
+            if (decision == WRITE_IF_LOADED && writer instanceof BeanPropertyWriter) {
+                Object value = ((BeanPropertyWriter) writer).get(pojo);
+                if (isLazy(value)) {
+                    if (lazyAssociations == LazyAssociations.STUB && value instanceof HibernateProxy) {
+                        jgen.writeFieldName(writer.getName());
+                        jgen.writeStartObject();
+                        prov.defaultSerializeField("id", ((HibernateProxy) value).getHibernateLazyInitializer().getIdentifier(), jgen);
+                        jgen.writeEndObject();
+                        return;
+                    }
+                    decision = SKIP;
+                }
+            }
+            if (decision != SKIP) {
+                writer.serializeAsField(pojo, jgen, prov);
+            } else if (!jgen.canOmitFields()) {
+                writer.serializeAsOmittedField(pojo, jgen, prov);
+            }
+        }
+
+        private byte decision(PropertyWriter writer) {
+            if (!(writer instanceof IndexedPropertyWriter)) {
+                return compile(writer);
+            }
+            IndexedPropertyWriter indexed = (IndexedPropertyWriter) writer;
+            byte[] decisions = this.decisions;
+            if (decisions == null || decisions.length < indexed.count) {
+                decisions = new byte[indexed.count];
+                this.decisions = decisions;
+            }
+            byte decision = decisions[indexed.index];
+            if (decision == UNKNOWN) {
+                decision = compile(writer);
+                decisions[indexed.index] = decision;
+            }
+            return decision;
+        }
+
+        private byte compile(PropertyWriter writer) {
+            String name = writer.getName();
+            if (includeFields != null && includeFields.contains(name)) {
+                // asked for, e.g. through embedded
+                return WRITE;
+            }
+            if (includeFields != null && !apply(includeFields, filterFields, name)) {
+                return SKIP;
+            }
+            return lazyAssociations != LazyAssociations.LOAD && isAssociation(writer) ? WRITE_IF_LOADED : WRITE;
+        }
+    }
+
+    private static boolean isAssociation(PropertyWriter writer) {
+        return writer.getType() != null
+                && (writer.getType().isCollectionLikeType() || BaseEntity.class.isAssignableFrom(writer.getType().getRawClass()));
+    }
+
+    /**
+     * Numbers the properties of the serializers of filtered classes, see {@link #isFiltered(Class)}.
+     */
+    public static class PropertyIndex extends BeanSerializerModifier {
+
+        @Override
+        public List<BeanPropertyWriter> changeProperties(SerializationConfig config, BeanDescription beanDesc,
+                                                         List<BeanPropertyWriter> beanProperties) {
+            if (!isFiltered(beanDesc.getBeanClass())) {
+                return beanProperties;
+            }
+            List<BeanPropertyWriter> indexed = new ArrayList<>(beanProperties.size());
+            for (int i = 0; i < beanProperties.size(); i++) {
+                indexed.add(new IndexedPropertyWriter(beanProperties.get(i), i, beanProperties.size()));
+            }
+            return indexed;
+        }
+    }
+
+    private static class IndexedPropertyWriter extends BeanPropertyWriter {
+
+        private final int index;
+
+        private final int count;
+
+        IndexedPropertyWriter(BeanPropertyWriter base, int index, int count) {
+            super(base);
+            this.index = index;
+            this.count = count;
+        }
+
+        @Override
+        protected BeanPropertyWriter _new(PropertyName newName) {
+            return new IndexedPropertyWriter(super._new(newName), index, count);
+        }
+    }
+
     public boolean isLazy(Object value) {
 
         if (value instanceof HibernateProxy) {//hibernate代理对象
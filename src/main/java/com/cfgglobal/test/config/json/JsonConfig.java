@@ -2,8 +2,6 @@ package com.cfgglobal.test.config.json;
 
 import com.cfgglobal.test.config.app.ApplicationProperties;
 import com.cfgglobal.test.domain.BaseEntity;
-import com.cfgglobal.test.domain.User;
-import com.google.common.base.CaseFormat;
 import com.google.common.collect.Lists;
 import com.querydsl.core.types.EntityPath;
 import com.querydsl.core.types.Path;
@@ -25,6 +23,7 @@ import org.joor.Reflect;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.text.MessageFormat;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static com.google.common.base.CaseFormat.*;
@@ -89,6 +88,13 @@ public class JsonConfig {
     }
 
     public static Option<JsonConfig> create(String uri, String fields, String embedded) {
+        return create(EndpointMetadata::resolve, uri, fields, embedded);
+    }
+
+    /**
+     * @param endpoints metadata of an endpoint segment, e.g. the lookup of an {@link EndpointRegistry}
+     */
+    public static Option<JsonConfig> create(Function<String, Option<EndpointMetadata>> endpoints, String uri, String fields, String embedded) {
         List<List<String>> embeddedEntity = Option.of(embedded)
                 .map(e -> e.split(","))
                 .map(List::of)
@@ -99,37 +105,34 @@ public class JsonConfig {
                 .removeAll(List::isEmpty);
         String endpoint = JsonConfig.getRootEndpoint(uri);
 
-        Option<Tuple2<Class, EntityPathBase>> rootElement = endpoints(endpoint);
+        Option<EndpointMetadata> rootElement = endpoints.apply(endpoint);
         if (rootElement.isEmpty()) {
             return Option.none();
         }
         JsonConfig jsonConfig = JsonConfig.start();
-        Map<Class, List<Path>> fieldsInRequest = getFields(rootElement.get()._1, fields);
-        jsonConfig.include(rootElement.get()._1, fieldsInRequest.getOrElse(rootElement.get()._1, JsonConfig.firstLevel(rootElement.get()._2, "AUDITING".equals(fields))));
+        Map<Class, List<Path>> fieldsInRequest = getFields(rootElement.get().getType(), fields);
+        jsonConfig.include(rootElement.get().getType(), fieldsInRequest.getOrElse(rootElement.get().getType(), rootElement.get().firstLevel("AUDITING".equals(fields))));
 
 
         if (!embeddedEntity.isEmpty()) {
             checkEmbedded(embeddedEntity);
             embeddedEntity.sortBy(Traversable::size)
                     .forEach(e -> {
-                        System.out.println("embedded " + e);
+                        log.debug("embedded {}", e);
                         if (e.size() < 2) {
                             // rootEntity embeddedNode:String
                             String embeddedNode = e.head();
-                            addEmbedded(jsonConfig, fieldsInRequest, rootElement, embeddedNode);
+                            addEmbedded(endpoints, jsonConfig, fieldsInRequest, rootElement, embeddedNode);
                         } else {
-                            System.out.println("nested nodes");
                             //去除最后2级，倒数第二级已经在之前的循环中加入了第一层，只需要把嵌套节点追加进去，最后一层add first level
                             String lastNode = e.last();
-                            System.out.printf(lastNode);
                             String lastParentNode = e.dropRight(1).last();
-                            System.out.println(lastParentNode);
 
-                            Option<Tuple2<Class, EntityPathBase>> parentElement = endpoints(lastParentNode);
+                            Option<EndpointMetadata> parentElement = endpoints.apply(lastParentNode);
                             if (parentElement.isEmpty() && lastParentNode.endsWith("s")) {
-                                parentElement = endpoints(lastParentNode.substring(0, lastParentNode.length() - 1));
+                                parentElement = endpoints.apply(lastParentNode.substring(0, lastParentNode.length() - 1));
                             }
-                            addEmbedded(jsonConfig, fieldsInRequest, parentElement, lastNode);
+                            addEmbedded(endpoints, jsonConfig, fieldsInRequest, parentElement, lastNode);
                         }
 
 
@@ -138,46 +141,20 @@ public class JsonConfig {
         return Option.of(jsonConfig);
     }
 
-    private static void addEmbedded(JsonConfig jsonConfig, Map<Class, List<Path>> fieldsInRequest, Option<Tuple2<Class, EntityPathBase>> rootElement, String embeddedNode) {
-        EntityPath rootEntity = rootElement.get()._2;
-        Path embeddedEntityPath = Try.of(() -> (Path) Reflect.on(rootEntity).get(LOWER_HYPHEN.to(LOWER_CAMEL, embeddedNode))).getOrElse(() -> {
-            if (rootEntity.getType() == User.class) {//Special process for User class
-                Class userClazz = Reflect.on(ApplicationProperties.myUserClass).get();
-                return Reflect.on(JsonConfig.toQ(userClazz)).get(LOWER_HYPHEN.to(LOWER_CAMEL, embeddedNode));
-            } else {
-                return null;
-            }
-        });
+    private static void addEmbedded(Function<String, Option<EndpointMetadata>> endpoints, JsonConfig jsonConfig, Map<Class, List<Path>> fieldsInRequest, Option<EndpointMetadata> rootElement, String embeddedNode) {
+        EntityPath rootEntity = rootElement.get().getPath();
+        Option<Tuple2<Path, String>> embeddedEntityPath = rootElement.get().path(LOWER_HYPHEN.to(LOWER_CAMEL, embeddedNode));
 
-        if (embeddedEntityPath == null) {
+        if (embeddedEntityPath.isEmpty()) {
             throw new IllegalArgumentException(MessageFormat.format("Invalid embedded [{0}],does not exist on entity [{1}],avaliable embedded [{2}]." +
                     "Metadata is based on QueryDSL's Q object, not javabean. " +
-                    "Run `gradle clean build` to generate QueryDSL Q Object.", embeddedNode, rootEntity.toString(), getAvailableEmbeddedPaths(rootEntity)
+                    "Run `gradle clean build` to generate QueryDSL Q Object.", embeddedNode, rootEntity.toString(), rootElement.get().embeddable()
                     .map(e->LOWER_CAMEL.converterTo(LOWER_HYPHEN).convert(e)).mkString(",")));
         }
-        jsonConfig.include(rootElement.get()._1, embeddedEntityPath); //追加？
-
-        Option<Tuple2<Class, EntityPathBase>> nextEntity = endpoints(getNext(embeddedEntityPath));
-        jsonConfig.include(nextEntity.get()._1, fieldsInRequest.getOrElse(nextEntity.get()._1, JsonConfig.firstLevel(nextEntity.get()._2, false)));
-    }
-
-    private static List<String> getAvailableEmbeddedPaths(EntityPath rootEntity) {
-        return List.of(rootEntity.getClass().getFields())
-                .filter(re -> ListPath.class.isAssignableFrom(re.getType()) || EntityPath.class.isAssignableFrom(re.getType()))
-                .map(Field::getName);
-    }
-
-
-    private static String getNext(Path embeddedEntityPath) {
-        String next;
-        if (embeddedEntityPath instanceof ListPath) {
-            next = ((Class) Reflect.on(embeddedEntityPath).get("elementType")).getSimpleName();
-        } else {
-            next = embeddedEntityPath.getType().getSimpleName();
-        }
+        jsonConfig.include(rootElement.get().getType(), embeddedEntityPath.get()._1); //追加？
 
-        next = CaseFormat.UPPER_CAMEL.to(CaseFormat.LOWER_HYPHEN, next);
-        return next;
+        EndpointMetadata nextEntity = endpoints.apply(embeddedEntityPath.get()._2).get();
+        jsonConfig.include(nextEntity.getType(), fieldsInRequest.getOrElse(nextEntity.getType(), nextEntity.firstLevel(false)));
     }
 
     private static void checkEmbedded(List<List<String>> embeddedEntity) {
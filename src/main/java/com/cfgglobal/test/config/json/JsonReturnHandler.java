@@ -1,8 +1,14 @@
 package com.cfgglobal.test.config.json;
 
+import com.cfgglobal.test.metrics.LatencyRegistry;
+import com.cfgglobal.test.metrics.LazyLoadCounter;
+import com.cfgglobal.test.metrics.LatencyRegistry.Stage;
+import com.cfgglobal.test.web.interceptors.LatencyInterceptor;
 import io.vavr.collection.List;
+import lombok.extern.slf4j.Slf4j;
 import org.joor.Reflect;
 import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.config.BeanPostProcessor;
 import org.springframework.core.MethodParameter;
 import org.springframework.http.MediaType;
@@ -11,6 +17,7 @@ import org.springframework.http.server.ServletServerHttpRequest;
 import org.springframework.http.server.ServletServerHttpResponse;
 import org.springframework.stereotype.Component;
 import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
 import org.springframework.web.method.support.HandlerMethodReturnValueHandler;
 import org.springframework.web.method.support.ModelAndViewContainer;
 import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
@@ -19,12 +26,19 @@ import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+@Slf4j
 @Component
 public class JsonReturnHandler implements HandlerMethodReturnValueHandler, BeanPostProcessor {
 
 
     List<ResponseBodyAdvice<Object>> advices = List.empty();
 
+    @Autowired
+    LatencyRegistry latencyRegistry;
+
+    @Autowired
+    CustomerJsonSerializer jsonSerializer;
+
     @Override
     public boolean supportsReturnType(MethodParameter returnType) {
 
@@ -55,21 +69,26 @@ public class JsonReturnHandler implements HandlerMethodReturnValueHandler, BeanP
 
         HttpServletResponse response = webRequest.getNativeResponse(HttpServletResponse.class);
 
-        CustomerJsonSerializer jsonSerializer = new CustomerJsonSerializer();
-
-        JsonConfig
-                .get()
-                .map(JsonConfig::getList)
-                .getOrElse(List.empty())
-                .forEach(jsonSerializer::filter);
-
         response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
         if (returnValue.getClass().equals(ResponseEntity.class)) {
             returnValue = Reflect.on(returnValue).get("body");
         }
 
-        String json = jsonSerializer.toJson(returnValue);
-        response.getWriter().write(json);
+        long start = System.nanoTime();
+        LazyLoadCounter.start();
+        try {
+            // large bodies leave the response buffer before they are complete and are sent chunked
+            jsonSerializer.write(JsonConfig.get().getOrElse(JsonConfig::start), returnValue, response.getOutputStream());
+        } finally {
+            int lazyLoads = LazyLoadCounter.stop();
+            webRequest.setAttribute(LazyLoadCounter.LAZY_LOADS, lazyLoads, RequestAttributes.SCOPE_REQUEST);
+            if (lazyLoads > 0) {
+                log.debug("{} lazy loads while writing {}", lazyLoads, returnType.getMethod());
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        latencyRegistry.recordStage(Stage.JSON_SERIALIZATION, elapsed);
+        webRequest.setAttribute(LatencyInterceptor.SERIALIZATION_NANOS, elapsed, RequestAttributes.SCOPE_REQUEST);
     }
 
     @Override
@@ -3,6 +3,7 @@ package com.cfgglobal.test.dao;
 import com.cfgglobal.test.dao.base.BaseDao;
 import com.cfgglobal.test.domain.Branch;
 import io.vavr.collection.List;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -14,4 +15,11 @@ public interface BranchDao extends BaseDao<Branch, Long> {
     @Query("SELECT id from Branch where parent_id = :id ")
     List<Long> findSubOrgIds(@Param("id") Long id);
 
+    @Query("SELECT b.id, p.id from Branch b left join b.parent p")
+    java.util.List<Object[]> findParentIds();
+
+    @Modifying
+    @Query("update Branch b set b.path = concat(:path, substring(b.path, length(:oldPath) + 1)) where b.path like concat(:oldPath, '%')")
+    int movePaths(@Param("oldPath") String oldPath, @Param("path") String path);
+
 }
\ No newline at end of file
@@ -0,0 +1,9 @@
+package com.cfgglobal.test.dao;
+
+import com.cfgglobal.test.dao.base.BaseDao;
+import com.cfgglobal.test.domain.VisitRollup;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface VisitRollupDao extends BaseDao<VisitRollup, Long> {
+}
@@ -29,6 +29,13 @@ public interface BaseDao<T, ID extends Serializable> extends JpaRepository<T, ID
 
     List<T> findByFilter(Filter filter);
 
+    /**
+     * The row with this id, if it also passes the filters, in a single query.
+     */
+    Optional<T> findOneByFilter(ID id, List<Filter> filters);
+
+    boolean existsByFilter(ID id, List<Filter> filters);
+
     Page<T> findAll(Specification<T> spec, Pageable pageable, String entityGraphName);
 
     boolean support(String modelType);
@@ -13,7 +13,10 @@ import org.apache.commons.lang3.math.NumberUtils;
 import org.joor.Reflect;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.support.JpaEntityInformation;
+import org.springframework.data.jpa.repository.support.JpaEntityInformationSupport;
 import org.springframework.data.jpa.repository.support.SimpleJpaRepository;
 
 import javax.persistence.EntityGraph;
@@ -33,12 +36,15 @@ public class BaseDaoImpl<T, ID extends Serializable> extends SimpleJpaRepository
 
     private final Class<T> domainClass;
 
+    private final JpaEntityInformation<T, ?> entityInformation;
+
     private EntityManager entityManager;
 
     public BaseDaoImpl(Class<T> domainClass, EntityManager em) {
         super(domainClass, em);
         this.domainClass = domainClass;
         this.entityManager = em;
+        this.entityInformation = JpaEntityInformationSupport.getEntityInformation(domainClass, em);
 
     }
 
@@ -79,6 +85,29 @@ public class BaseDaoImpl<T, ID extends Serializable> extends SimpleJpaRepository
         return findByFilter(List.of(filter));
     }
 
+    @Override
+    public Optional<T> findOneByFilter(ID id, List<Filter> filters) {
+        java.util.List<T> result = getQuery(idSpecification(id, filters), (Sort) null)
+                .setMaxResults(1)
+                .getResultList();
+        return result.stream().findFirst();
+    }
+
+    @Override
+    public boolean existsByFilter(ID id, List<Filter> filters) {
+        return count(idSpecification(id, filters)) > 0;
+    }
+
+    private Specification<T> idSpecification(ID id, List<Filter> filters) {
+        log.debug("{} {}", id, filters);
+        return (root, query, cb) -> {
+            List<Predicate> predicates = getPredicates(filters, root, cb)
+                    .prepend(cb.equal(root.get(entityInformation.getIdAttribute().getName()), id));
+            query.where(predicates.toJavaArray(Predicate.class));
+            return query.getRestriction();
+        };
+    }
+
 
     @Override
     public Page<T> findAll(Specification<T> spec, Pageable pageable, String entityGraphName) {
@@ -163,6 +192,9 @@ public class BaseDaoImpl<T, ID extends Serializable> extends SimpleJpaRepository
             case Filter.OPERATOR_LIKE:
                 predicate = cb.like(searchPath, "%" + s + "%");
                 break;
+            case Filter.OPERATOR_STARTS_WITH:
+                predicate = cb.like(searchPath, s.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%", '\\');
+                break;
             case Filter.OPERATOR_LESS_EQ:
                 predicate = cb.lessThan(searchPath, s);
                 break;
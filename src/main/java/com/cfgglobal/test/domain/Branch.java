@@ -1,6 +1,7 @@
 package com.cfgglobal.test.domain;
 
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
@@ -12,6 +13,7 @@ import javax.persistence.*;
 import java.util.List;
 
 @Entity
+@Table(indexes = @Index(name = "idx_branch_path", columnList = "path"))
 @Getter
 @Setter
 @DynamicUpdate
@@ -27,6 +29,12 @@ public class Branch extends BaseEntity {
     Branch parent;
     @OneToMany(cascade = {CascadeType.REFRESH, CascadeType.REMOVE}, fetch = FetchType.LAZY, mappedBy = "parent")
     List<Branch> children;
+
+    /**
+     * Materialized path of ids from the root, e.g. {@code /1/4/9/}, maintained by the BranchService.
+     */
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    String path;
 /*
     @ManyToMany(cascade = CascadeType.REFRESH)
 
@@ -1,6 +1,7 @@
 package com.cfgglobal.test.domain;
 
 import com.cfgglobal.test.enums.UserType;
+import com.cfgglobal.test.security.AuthorityDictionary;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AccessLevel;
 import lombok.Getter;
@@ -15,6 +16,7 @@ import org.springframework.security.core.userdetails.UserDetails;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.List;
 
@@ -58,6 +60,11 @@ public class User extends BaseEntity implements UserDetails {
     @Transient
     List<GrantedAuthority> grantedAuthorities;
 
+    @Transient
+    @JsonIgnore
+    @Setter(AccessLevel.NONE)
+    transient volatile BitSet authorityBits;
+
     @OneToMany(cascade = {CascadeType.PERSIST, CascadeType.REFRESH, CascadeType.MERGE}, orphanRemoval = true)
     List<Attachment> attachments;
 
@@ -69,6 +76,25 @@ public class User extends BaseEntity implements UserDetails {
         return grantedAuthorities;
     }
 
+    public User setGrantedAuthorities(List<GrantedAuthority> grantedAuthorities) {
+        this.grantedAuthorities = grantedAuthorities;
+        this.authorityBits = null;
+        return this;
+    }
+
+    /**
+     * Granted authorities as {@link AuthorityDictionary} ids, computed once per principal.
+     */
+    @JsonIgnore
+    public BitSet getAuthorityBits() {
+        BitSet bits = authorityBits;
+        if (bits == null && grantedAuthorities != null) {
+            bits = AuthorityDictionary.bitsOf(grantedAuthorities);
+            authorityBits = bits;
+        }
+        return bits;
+    }
+
     @Override
     public boolean isAccountNonExpired() {
         return true;
@@ -10,8 +10,11 @@ import org.hibernate.annotations.DynamicUpdate;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.Index;
+import javax.persistence.Table;
 
 @Entity
+@Table(indexes = @Index(name = "idx_visit_record_created_at", columnList = "createdAt"))
 @Getter
 @Setter
 @DynamicUpdate
@@ -26,6 +29,18 @@ public class VisitRecord extends BaseEntity {
     String queryString;
     @Column(length = 2048)
     String requestBody;
+    /**
+     * milliseconds
+     */
     Long executionTime;
+    Integer status;
+    /**
+     * bytes allocated by the request thread, only recorded while resource accounting is on
+     */
+    Long allocatedBytes;
+    /**
+     * cpu nanoseconds of the request thread, only recorded while resource accounting is on
+     */
+    Long cpuTime;
 
 }
@@ -0,0 +1,99 @@
+package com.cfgglobal.test.domain;
+
+
+import com.cfgglobal.test.enums.RollupPeriod;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.FieldDefaults;
+import org.hibernate.annotations.DynamicInsert;
+import org.hibernate.annotations.DynamicUpdate;
+
+import javax.persistence.*;
+import java.time.ZonedDateTime;
+
+/**
+ * Visits of one uri template, method, user and ip within a minute or an hour, written by the VisitRollupAggregator.
+ * <p>
+ * Latencies are counted in buckets so that rows of several nodes can be added up, percentiles are the upper
+ * bound of the bucket they fall in.
+ */
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_visit_rollup", columnNames = {"period", "periodStart", "uriTemplate", "method", "userId", "ip"}),
+        indexes = @Index(name = "idx_visit_rollup_period_start", columnList = "periodStart"))
+@Getter
+@Setter
+@DynamicUpdate
+@DynamicInsert
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class VisitRollup extends BaseEntity {
+
+    /**
+     * Upper bounds of the latency buckets in milliseconds, the last bucket has none.
+     */
+    public static final long[] LATENCY_BOUNDS = {10, 50, 100, 250, 500, 1000, 5000};
+
+    @Enumerated(value = EnumType.STRING)
+    @Column(length = 16)
+    RollupPeriod period;
+    ZonedDateTime periodStart;
+    String uriTemplate;
+    @Column(length = 16)
+    String method;
+    /**
+     * 0 for anonymous requests
+     */
+    Long userId;
+    @Column(length = 64)
+    String ip;
+    Long requestCount;
+    Long errorCount;
+    Long latencySum;
+    Long latencyMax;
+    @JsonIgnore
+    Long le10;
+    @JsonIgnore
+    Long le50;
+    @JsonIgnore
+    Long le100;
+    @JsonIgnore
+    Long le250;
+    @JsonIgnore
+    Long le500;
+    @JsonIgnore
+    Long le1000;
+    @JsonIgnore
+    Long le5000;
+    @JsonIgnore
+    Long leInf;
+
+    public long getLatencyP50() {
+        return percentile(0.5);
+    }
+
+    public long getLatencyP90() {
+        return percentile(0.9);
+    }
+
+    public long getLatencyP99() {
+        return percentile(0.99);
+    }
+
+    private long percentile(double quantile) {
+        long[] buckets = {n(le10), n(le50), n(le100), n(le250), n(le500), n(le1000), n(le5000), n(leInf)};
+        long rank = (long) Math.ceil(n(requestCount) * quantile);
+        long seen = 0;
+        for (int i = 0; i < LATENCY_BOUNDS.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return Math.min(LATENCY_BOUNDS[i], n(latencyMax));
+            }
+        }
+        return n(latencyMax);
+    }
+
+    private static long n(Long value) {
+        return value == null ? 0 : value;
+    }
+}
@@ -0,0 +1,8 @@
+package com.cfgglobal.test.enums;
+
+public enum RollupPeriod {
+
+    MINUTE,
+
+    HOUR
+}
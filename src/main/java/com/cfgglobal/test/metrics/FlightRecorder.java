@@ -0,0 +1,279 @@
+package com.cfgglobal.test.metrics;
+
+import com.cfgglobal.test.config.app.ApplicationProperties;
+import com.google.common.collect.ImmutableMap;
+import lombok.extern.slf4j.Slf4j;
+import org.joor.Reflect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Time bounded Java Flight Recorder recordings, written to a local directory, for {@code /sys/profile}.
+ * <p>
+ * Recordings are controlled through the {@code DiagnosticCommand} MBean, the same commands {@code jcmd JFR.start}
+ * runs, and read back with {@code jdk.jfr.consumer} by reflection, so nothing newer than Java 8 is needed to compile.
+ * Summaries need a JVM that ships the consumer API, 11 or 8u262 and later.
+ */
+@Slf4j
+@Component
+@EnableConfigurationProperties(ApplicationProperties.class)
+public class FlightRecorder {
+
+    /**
+     * Settings shipped with the JDK: default has about 1% overhead, profile about 2% and samples more often.
+     */
+    public static final List<String> SETTINGS = Arrays.asList("default", "profile");
+
+    static final String PACKAGE = "com.cfgglobal.";
+
+    private static final String EXTENSION = ".jfr";
+
+    private static final Pattern NAME = Pattern.compile("profile-[0-9-]+");
+
+    private static final DateTimeFormatter NAME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private static final String EXECUTION_SAMPLE = "jdk.ExecutionSample";
+
+    /**
+     * Allocation events with the field holding their bytes; the sample event replaces the TLAB ones since JDK 16.
+     */
+    private static final Map<String, String> ALLOCATION_EVENTS = ImmutableMap.of(
+            "jdk.ObjectAllocationSample", "weight",
+            "jdk.ObjectAllocationInNewTLAB", "tlabSize",
+            "jdk.ObjectAllocationOutsideTLAB", "allocationSize");
+
+    private final LongSupplier clock;
+
+    private volatile Recording running;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
+    public FlightRecorder() {
+        this(System::currentTimeMillis);
+    }
+
+    FlightRecorder(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Starts a recording that stops by itself after {@code seconds}, only one runs at a time.
+     */
+    public synchronized Map<String, Object> start(String settings, int seconds) throws IOException {
+        ApplicationProperties.Profile profile = applicationProperties.getProfile();
+        if (!SETTINGS.contains(settings)) {
+            throw new IllegalArgumentException("settings must be one of " + SETTINGS);
+        }
+        if (seconds <= 0 || seconds > profile.getMaxDuration()) {
+            throw new IllegalArgumentException("duration must be between 1 and " + profile.getMaxDuration() + " seconds");
+        }
+        Recording current = running;
+        if (current != null && current.until > clock.getAsLong()) {
+            throw new IllegalStateException("recording " + current.name + " is running until " + Instant.ofEpochMilli(current.until));
+        }
+        Path directory = Paths.get(profile.getDirectory());
+        Files.createDirectories(directory);
+        purge(directory, profile.getKeep() - 1);
+        long now = clock.getAsLong();
+        String name = "profile-" + LocalDateTime.ofInstant(Instant.ofEpochMilli(now), ZoneId.systemDefault()).format(NAME_FORMAT);
+        Path file = directory.resolve(name + EXTENSION).toAbsolutePath();
+        diagnosticCommand("jfrStart", "name=" + name, "settings=" + settings, "duration=" + seconds + "s", "filename=" + file);
+        running = new Recording(name, settings, now, now + TimeUnit.SECONDS.toMillis(seconds));
+        log.info("started flight recording {} with {} settings for {}s", name, settings, seconds);
+        return running.toMap(true);
+    }
+
+    /**
+     * Stops the running recording early, it is written as when its duration ends.
+     */
+    public synchronized Map<String, Object> stop() {
+        Recording current = running;
+        if (current == null || current.until <= clock.getAsLong()) {
+            throw new IllegalStateException("no recording is running");
+        }
+        diagnosticCommand("jfrStop", "name=" + current.name);
+        running = new Recording(current.name, current.settings, current.started, clock.getAsLong());
+        return running.toMap(false);
+    }
+
+    /**
+     * Recordings on disk, newest first, and the running one.
+     */
+    public List<Map<String, Object>> list() throws IOException {
+        Path directory = Paths.get(applicationProperties.getProfile().getDirectory());
+        Recording current = running;
+        boolean active = current != null && current.until > clock.getAsLong();
+        List<Map<String, Object>> recordings = files(directory).stream()
+                .filter(path -> !active || !path.getFileName().toString().equals(current.name + EXTENSION))
+                .map(path -> ImmutableMap.<String, Object>of(
+                        "name", path.getFileName().toString().replace(EXTENSION, ""),
+                        "size", path.toFile().length(),
+                        "modified", path.toFile().lastModified()))
+                .collect(Collectors.toList());
+        if (active) {
+            recordings.add(0, current.toMap(true));
+        }
+        return recordings;
+    }
+
+    /**
+     * The file of a finished recording, null if there is none of that name.
+     */
+    public File file(String name) {
+        if (name == null || !NAME.matcher(name).matches()) {
+            return null;
+        }
+        Recording current = running;
+        if (current != null && current.name.equals(name) && current.until > clock.getAsLong()) {
+            return null;
+        }
+        File file = Paths.get(applicationProperties.getProfile().getDirectory(), name + EXTENSION).toFile();
+        return file.isFile() ? file : null;
+    }
+
+    /**
+     * Top allocation sites by sampled bytes and hot methods by execution samples, each attributed to the nearest
+     * frame in our own packages, so time spent in Hibernate or Jackson counts for the code that called it.
+     * Events are read one at a time, a recording is never held in memory as a whole.
+     */
+    public Map<String, Object> summary(File file, int top) throws IOException {
+        Map<String, Long> allocations = new HashMap<>();
+        Map<String, Long> samples = new HashMap<>();
+        long sampleCount = 0;
+        long allocatedBytes = 0;
+        Reflect reader = Reflect.on("jdk.jfr.consumer.RecordingFile").create(file.toPath());
+        try (Closeable ignored = reader.get()) {
+            while (reader.call("hasMoreEvents").<Boolean>get()) {
+                Reflect recorded = reader.call("readEvent");
+                String type = recorded.call("getEventType").call("getName").get();
+                if (EXECUTION_SAMPLE.equals(type)) {
+                    sampleCount++;
+                    String frame = applicationFrame(recorded, false);
+                    if (frame != null) {
+                        samples.merge(frame, 1L, Long::sum);
+                    }
+                } else if (ALLOCATION_EVENTS.containsKey(type)) {
+                    long bytes = recorded.call("getLong", ALLOCATION_EVENTS.get(type)).get();
+                    allocatedBytes += bytes;
+                    String frame = applicationFrame(recorded, true);
+                    if (frame != null) {
+                        allocations.merge(frame, bytes, Long::sum);
+                    }
+                }
+            }
+        }
+        return ImmutableMap.of(
+                "executionSamples", sampleCount,
+                "allocatedBytes", allocatedBytes,
+                "hotMethods", top(samples, top),
+                "allocationSites", top(allocations, top));
+    }
+
+    private static String applicationFrame(Reflect event, boolean line) {
+        Object stackTrace = event.call("getStackTrace").get();
+        if (stackTrace == null) {
+            return null;
+        }
+        List<?> frames = Reflect.on(stackTrace).call("getFrames").get();
+        for (Object frame : frames) {
+            Reflect method = Reflect.on(frame).call("getMethod");
+            String type = method.call("getType").call("getName").get();
+            if (type.startsWith(PACKAGE)) {
+                String name = type + "." + method.call("getName").get();
+                int lineNumber = Reflect.on(frame).call("getLineNumber").get();
+                return line && lineNumber > 0 ? name + ":" + lineNumber : name;
+            }
+        }
+        return null;
+    }
+
+    private static Map<String, Long> top(Map<String, Long> counts, int top) {
+        Map<String, Long> sorted = new LinkedHashMap<>();
+        counts.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(top)
+                .forEach(entry -> sorted.put(entry.getKey(), entry.getValue()));
+        return sorted;
+    }
+
+    private static List<Path> files(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.filter(path -> NAME.matcher(path.getFileName().toString().replace(EXTENSION, "")).matches())
+                    .sorted(Comparator.comparing(Path::getFileName).reversed())
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Keeps the newest {@code keep} recordings.
+     */
+    private static void purge(Path directory, int keep) throws IOException {
+        List<Path> paths = files(directory);
+        for (Path path : paths.subList(Math.min(Math.max(keep, 0), paths.size()), paths.size())) {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    private static String diagnosticCommand(String operation, String... arguments) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            return (String) server.invoke(new ObjectName("com.sun.management:type=DiagnosticCommand"), operation,
+                    new Object[]{arguments}, new String[]{String[].class.getName()});
+        } catch (Exception e) {
+            throw new IllegalStateException("flight recorder is not available on this JVM, " + e.getMessage(), e);
+        }
+    }
+
+    private static final class Recording {
+
+        private final String name;
+
+        private final String settings;
+
+        private final long started;
+
+        private final long until;
+
+        private Recording(String name, String settings, long started, long until) {
+            this.name = name;
+            this.settings = settings;
+            this.started = started;
+            this.until = until;
+        }
+
+        private Map<String, Object> toMap(boolean running) {
+            return ImmutableMap.of("name", name, "settings", settings, "started", started, "until", until, "running", running);
+        }
+    }
+}
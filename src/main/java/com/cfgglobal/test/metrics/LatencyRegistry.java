@@ -0,0 +1,187 @@
+package com.cfgglobal.test.metrics;
+
+import com.google.common.collect.ImmutableMap;
+import io.vavr.Tuple;
+import io.vavr.Tuple2;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Latencies of every endpoint, by method and matched route pattern, and of the stages a request passes.
+ * While resource accounting is on, the bytes allocated and cpu time used by requests are kept per endpoint as well.
+ */
+@Component
+public class LatencyRegistry {
+
+    /**
+     * Endpoint of requests that no handler mapping matched, e.g. rejected before reaching the dispatcher.
+     */
+    public static final String UNMATCHED = "unmatched";
+
+    /**
+     * Method of requests with a method outside the standard ones, which Tomcat accepts as any token, so that
+     * clients cannot add endpoints without bound.
+     */
+    public static final String OTHER_METHOD = "OTHER";
+
+    private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    public enum Stage {
+        TOKEN_PARSE,
+        USER_LOAD,
+        PERMISSION_MATCH,
+        ACCESS_DECISION,
+        HANDLER,
+        JSON_SERIALIZATION
+    }
+
+    private final ConcurrentMap<Tuple2<String, String>, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    private final Map<Stage, LatencyHistogram> stages = new EnumMap<>(Stage.class);
+
+    public LatencyRegistry() {
+        for (Stage stage : Stage.values()) {
+            stages.put(stage, new LatencyHistogram());
+        }
+    }
+
+    public void recordEndpoint(String method, String pattern, long nanos) {
+        endpoint(method, pattern).latency.record(nanos);
+    }
+
+    public void recordResources(String method, String pattern, long allocatedBytes, long cpuNanos) {
+        Endpoint endpoint = endpoint(method, pattern).withResources();
+        endpoint.allocatedBytes.record(allocatedBytes);
+        endpoint.cpuTime.record(cpuNanos);
+    }
+
+    private Endpoint endpoint(String method, String pattern) {
+        Tuple2<String, String> key = Tuple.of(HttpMethod.resolve(method) == null ? OTHER_METHOD : method, pattern == null ? UNMATCHED : pattern);
+        Endpoint endpoint = endpoints.get(key);
+        if (endpoint == null) {
+            endpoint = endpoints.computeIfAbsent(key, k -> new Endpoint());
+        }
+        return endpoint;
+    }
+
+    public void recordStage(Stage stage, long nanos) {
+        stages.get(stage).record(nanos);
+    }
+
+    /**
+     * Latencies and cpu time in milliseconds, endpoints sorted by pattern.
+     */
+    public Map<String, Map<String, Map<String, Object>>> snapshot() {
+        Map<String, Map<String, Object>> endpointStats = new TreeMap<>();
+        endpoints.forEach((key, endpoint) -> {
+            Map<String, Object> stats = toMap(endpoint.latency);
+            if (endpoint.allocatedBytes != null) {
+                stats = ImmutableMap.<String, Object>builder()
+                        .putAll(stats)
+                        .put("cpuTime", toMap(endpoint.cpuTime))
+                        .put("allocatedBytes", ImmutableMap.of(
+                                "mean", endpoint.allocatedBytes.count() == 0 ? 0 : endpoint.allocatedBytes.sum() / endpoint.allocatedBytes.count(),
+                                "p50", endpoint.allocatedBytes.percentile(0.5),
+                                "p99", endpoint.allocatedBytes.percentile(0.99),
+                                "max", endpoint.allocatedBytes.max()))
+                        .build();
+            }
+            endpointStats.put(key._2 + " " + key._1, stats);
+        });
+        Map<String, Map<String, Object>> stageStats = new LinkedHashMap<>();
+        stages.forEach((stage, histogram) -> stageStats.put(stage.name().toLowerCase(), toMap(histogram)));
+        return ImmutableMap.of("endpoints", endpointStats, "stages", stageStats);
+    }
+
+    /**
+     * Prometheus text exposition format 0.0.4, as summaries in seconds.
+     */
+    public String prometheus() {
+        StringBuilder out = new StringBuilder();
+        out.append("# HELP http_server_requests_seconds Latency of requests by method and route pattern.\n");
+        out.append("# TYPE http_server_requests_seconds summary\n");
+        Map<String, Endpoint> sorted = new TreeMap<>();
+        endpoints.forEach((key, endpoint) -> sorted.put("method=\"" + escape(key._1) + "\",uri=\"" + escape(key._2) + "\"", endpoint));
+        sorted.forEach((labels, endpoint) -> summary(out, "http_server_requests_seconds", labels, endpoint.latency, NANOS_PER_SECOND));
+        out.append("# HELP http_server_requests_cpu_seconds Cpu time of the request thread, while resource accounting is on.\n");
+        out.append("# TYPE http_server_requests_cpu_seconds summary\n");
+        sorted.forEach((labels, endpoint) -> {
+            if (endpoint.cpuTime != null) {
+                summary(out, "http_server_requests_cpu_seconds", labels, endpoint.cpuTime, NANOS_PER_SECOND);
+            }
+        });
+        out.append("# HELP http_server_requests_allocated_bytes Bytes allocated by the request thread, while resource accounting is on.\n");
+        out.append("# TYPE http_server_requests_allocated_bytes summary\n");
+        sorted.forEach((labels, endpoint) -> {
+            if (endpoint.allocatedBytes != null) {
+                summary(out, "http_server_requests_allocated_bytes", labels, endpoint.allocatedBytes, 1);
+            }
+        });
+        out.append("# HELP access_control_stage_seconds Latency of the stages of a request.\n");
+        out.append("# TYPE access_control_stage_seconds summary\n");
+        stages.forEach((stage, histogram) -> summary(out, "access_control_stage_seconds", "stage=\"" + stage.name().toLowerCase() + "\"", histogram, NANOS_PER_SECOND));
+        return out.toString();
+    }
+
+    private static void summary(StringBuilder out, String name, String labels, LatencyHistogram histogram, double unit) {
+        for (double quantile : QUANTILES) {
+            out.append(name).append('{').append(labels).append(",quantile=\"").append(quantile).append("\"} ")
+                    .append(histogram.percentile(quantile) / unit).append('\n');
+        }
+        out.append(name).append("_sum{").append(labels).append("} ").append(histogram.sum() / unit).append('\n');
+        out.append(name).append("_count{").append(labels).append("} ").append(histogram.count()).append('\n');
+    }
+
+    private static Map<String, Object> toMap(LatencyHistogram histogram) {
+        long count = histogram.count();
+        return ImmutableMap.<String, Object>builder()
+                .put("count", count)
+                .put("mean", count == 0 ? 0 : millis(histogram.sum() / count))
+                .put("p50", millis(histogram.percentile(0.5)))
+                .put("p99", millis(histogram.percentile(0.99)))
+                .put("p999", millis(histogram.percentile(0.999)))
+                .put("max", millis(histogram.max()))
+                .build();
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * Resource histograms are only created once accounting has been on for the endpoint.
+     */
+    private static final class Endpoint {
+
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        private volatile LatencyHistogram allocatedBytes;
+
+        private volatile LatencyHistogram cpuTime;
+
+        private Endpoint withResources() {
+            if (allocatedBytes == null) {
+                synchronized (this) {
+                    if (allocatedBytes == null) {
+                        cpuTime = new LatencyHistogram();
+                        allocatedBytes = new LatencyHistogram();
+                    }
+                }
+            }
+            return this;
+        }
+    }
+}
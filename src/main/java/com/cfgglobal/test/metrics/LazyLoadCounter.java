@@ -0,0 +1,75 @@
+package com.cfgglobal.test.metrics;
+
+import org.hibernate.HibernateException;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.InitializeCollectionEvent;
+import org.hibernate.event.spi.InitializeCollectionEventListener;
+import org.hibernate.event.spi.LoadEvent;
+import org.hibernate.event.spi.LoadEventListener;
+import org.hibernate.internal.SessionFactoryImpl;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Counts the lazy proxies and collections initialized by the current thread between {@link #start()} and
+ * {@link #stop()}, e.g. while a response is serialized. Each of them is a query the handler did not fetch up front.
+ */
+@Component
+public class LazyLoadCounter implements LoadEventListener, InitializeCollectionEventListener {
+
+    /**
+     * Lazy loads during the json serialization of the response, set by the JsonReturnHandler.
+     */
+    public static final String LAZY_LOADS = LazyLoadCounter.class.getName() + ".LAZY_LOADS";
+
+    private static final ThreadLocal<int[]> count = new ThreadLocal<>();
+
+    @Autowired
+    private transient EntityManagerFactory entityManagerFactory;
+
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImpl.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.LOAD, this);
+        registry.appendListeners(EventType.INIT_COLLECTION, this);
+    }
+
+    public static void start() {
+        count.set(new int[1]);
+    }
+
+    /**
+     * @return lazy loads since {@link #start()}, 0 if counting was not started
+     */
+    public static int stop() {
+        int[] counted = count.get();
+        count.remove();
+        return counted == null ? 0 : counted[0];
+    }
+
+    static void increment() {
+        int[] counted = count.get();
+        if (counted != null) {
+            counted[0]++;
+        }
+    }
+
+    @Override
+    public void onLoad(LoadEvent event, LoadType loadType) throws HibernateException {
+        // initializing a proxy, other load types are finds and eager fetches
+        if (loadType == LoadEventListener.IMMEDIATE_LOAD) {
+            increment();
+        }
+    }
+
+    @Override
+    public void onInitializeCollection(InitializeCollectionEvent event) throws HibernateException {
+        increment();
+    }
+}
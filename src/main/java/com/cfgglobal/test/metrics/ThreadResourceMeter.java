@@ -0,0 +1,68 @@
+package com.cfgglobal.test.metrics;
+
+import com.cfgglobal.test.config.ActionReportProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Bytes allocated and cpu time used by the current thread, for accounting requests. Switched on and off at runtime
+ * through {@code /sys/metrics/resources}; only available on JVMs that count thread allocations.
+ */
+@Component
+@EnableConfigurationProperties(ActionReportProperties.class)
+public class ThreadResourceMeter {
+
+    private final com.sun.management.ThreadMXBean threads;
+
+    private volatile boolean enabled;
+
+    @Autowired
+    private ActionReportProperties actionReportProperties;
+
+    public ThreadResourceMeter() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        threads = bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()
+                && bean.isCurrentThreadCpuTimeSupported() ? (com.sun.management.ThreadMXBean) bean : null;
+    }
+
+    @PostConstruct
+    public void init() {
+        setEnabled(actionReportProperties.isResourceAccounting());
+    }
+
+    public boolean isSupported() {
+        return threads != null;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return whether accounting is on now, it stays off where it is not supported
+     */
+    public boolean setEnabled(boolean enabled) {
+        if (enabled && threads != null) {
+            threads.setThreadAllocatedMemoryEnabled(true);
+            threads.setThreadCpuTimeEnabled(true);
+            this.enabled = true;
+        } else {
+            this.enabled = false;
+        }
+        return this.enabled;
+    }
+
+    public long allocatedBytes() {
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    public long cpuTime() {
+        return threads.getCurrentThreadCpuTime();
+    }
+}
@@ -0,0 +1,136 @@
+package com.cfgglobal.test.security;
+
+import com.cfgglobal.test.base.ApiResp;
+import com.cfgglobal.test.config.app.ApplicationProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.vavr.Tuple;
+import io.vavr.Tuple2;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Admission control in front of the security filters: every request takes a slot of its endpoint group's
+ * {@link Bulkhead} or is turned away with 503 and Retry-After, so that a burst of exports or large lists cannot
+ * hold every connection of the pool while logins and reference data wait behind them.
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+@EnableConfigurationProperties(ApplicationProperties.class)
+public class AdmissionFilter extends OncePerRequestFilter {
+
+    static final String DEFAULT_GROUP = "default";
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private List<Tuple2<RequestMatcher, Bulkhead>> groups = new ArrayList<>();
+
+    private Bulkhead defaultGroup;
+
+    @PostConstruct
+    public void init() {
+        ApplicationProperties.Admission admission = applicationProperties.getAdmission();
+        List<Tuple2<RequestMatcher, Bulkhead>> groups = new ArrayList<>();
+        admission.getGroups().forEach((name, group) -> groups.add(Tuple.of(matcher(group.getPaths()), bulkhead(name, group))));
+        this.groups = groups;
+        this.defaultGroup = bulkhead(DEFAULT_GROUP, admission.getDefaultGroup());
+    }
+
+    private static Bulkhead bulkhead(String name, ApplicationProperties.Group group) {
+        return new Bulkhead(name, group.getMinLimit(), group.getLimit(), group.getQueue(), group.getQueueTimeout(),
+                group.getAdaptive(), group.getLatencyThreshold());
+    }
+
+    /**
+     * Paths may start with a method, e.g. {@code GET /v1/*}, to only match requests of that method.
+     */
+    private static RequestMatcher matcher(List<String> paths) {
+        Map<String, List<String>> byMethod = new HashMap<>();
+        for (String path : paths == null ? new ArrayList<String>() : paths) {
+            String method = path.contains(" ") ? StringUtils.substringBefore(path.trim(), " ").toUpperCase() : "";
+            byMethod.computeIfAbsent(method, k -> new ArrayList<>()).add(StringUtils.substringAfterLast(" " + path.trim(), " "));
+        }
+        Map<String, RequestMatcher> matchers = new HashMap<>();
+        byMethod.forEach((method, patterns) -> matchers.put(method, AnonymousPathMatcher.of(patterns)));
+        RequestMatcher any = matchers.remove("");
+        return request -> (any != null && any.matches(request))
+                || (matchers.containsKey(request.getMethod()) && matchers.get(request.getMethod()).matches(request));
+    }
+
+    Bulkhead bulkhead(HttpServletRequest request) {
+        for (Tuple2<RequestMatcher, Bulkhead> group : groups) {
+            if (group._1.matches(request)) {
+                return group._2;
+            }
+        }
+        return defaultGroup;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws ServletException, IOException {
+        if (!applicationProperties.getAdmission().getEnabled()) {
+            chain.doFilter(request, response);
+            return;
+        }
+        Bulkhead bulkhead = bulkhead(request);
+        boolean admitted;
+        try {
+            admitted = bulkhead.tryAcquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            admitted = false;
+        }
+        if (!admitted) {
+            reject(response, bulkhead);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            bulkhead.release(System.nanoTime() - start);
+        }
+    }
+
+    private void reject(HttpServletResponse response, Bulkhead bulkhead) throws IOException {
+        ApiResp apiResp = new ApiResp();
+        apiResp.setError("too many concurrent " + bulkhead.getName() + " requests, please retry later");
+        response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        response.setHeader("Retry-After", String.valueOf(applicationProperties.getAdmission().getRetryAfter()));
+        response.setContentType("application/json;charset=UTF-8");
+        response.getWriter().write(objectMapper.writeValueAsString(apiResp));
+    }
+
+    /**
+     * Limits and counters of every group, for {@code /sys/admission}.
+     */
+    public Map<String, Map<String, Object>> stats() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        groups.forEach(group -> stats.put(group._2.getName(), group._2.stats()));
+        stats.put(defaultGroup.getName(), defaultGroup.stats());
+        return stats;
+    }
+}
@@ -0,0 +1,168 @@
+package com.cfgglobal.test.security;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Matches the same requests as an {@code OrRequestMatcher} of {@link AntPathRequestMatcher}s, built once.
+ * <p>
+ * Ant patterns are split by shape so that the common cases cost a few hash lookups:
+ * <ul>
+ * <li>{@code /login}: exact path</li>
+ * <li>{@code /sys/*}: direct children of a directory</li>
+ * <li>{@code /files/**}: a directory and everything below it</li>
+ * <li>{@code /**}{@code /*.css}: file extension</li>
+ * </ul>
+ * Patterns that only use {@code *} and {@code ?} within segments, e.g. {@code /v1/transaction/*}{@code /receipt},
+ * are compiled to a regex; anything else is evaluated by a precompiled {@link AntPathRequestMatcher}.
+ */
+public final class AnonymousPathMatcher implements RequestMatcher {
+
+    private static final String MATCH_ALL = "/**";
+
+    private static final String CHILDREN = "/*";
+
+    private static final String ANY_FILE = "/**/*.";
+
+    private final Set<String> exactPaths = new HashSet<>();
+
+    private final Set<String> childrenOf = new HashSet<>();
+
+    private final Set<String> subPathsOf = new HashSet<>();
+
+    private final Set<String> extensions = new HashSet<>();
+
+    private final List<Pattern> segmentWildcards = new ArrayList<>();
+
+    private final List<RequestMatcher> wildcards = new ArrayList<>();
+
+    private boolean matchAll;
+
+    private AnonymousPathMatcher(Collection<String> patterns) {
+        for (String pattern : patterns) {
+            if (StringUtils.isBlank(pattern)) {
+                continue;
+            }
+            pattern = pattern.trim();
+            if (pattern.equals(MATCH_ALL) || pattern.equals("**")) {
+                matchAll = true;
+            } else if (!hasWildcard(pattern)) {
+                exactPaths.add(pattern);
+            } else if (pattern.endsWith(MATCH_ALL) && !hasWildcard(StringUtils.removeEnd(pattern, MATCH_ALL))) {
+                subPathsOf.add(StringUtils.removeEnd(pattern, MATCH_ALL));
+            } else if (pattern.endsWith(CHILDREN) && !hasWildcard(StringUtils.removeEnd(pattern, CHILDREN))) {
+                childrenOf.add(StringUtils.removeEnd(pattern, CHILDREN));
+            } else if (pattern.startsWith(ANY_FILE) && isExtension(pattern.substring(ANY_FILE.length()))) {
+                extensions.add(pattern.substring(ANY_FILE.length() - 1));
+            } else if (pattern.startsWith("/") && !StringUtils.containsAny(pattern, "**", "{", "}", "//")) {
+                segmentWildcards.add(toRegex(pattern));
+            } else {
+                wildcards.add(new AntPathRequestMatcher(pattern));
+            }
+        }
+    }
+
+    public static AnonymousPathMatcher of(Collection<String> patterns) {
+        return new AnonymousPathMatcher(patterns);
+    }
+
+    @Override
+    public boolean matches(HttpServletRequest request) {
+        if (matchAll) {
+            return true;
+        }
+        String path = getRequestPath(request);
+        if (exactPaths.contains(path)) {
+            return true;
+        }
+        int lastSlash = path.lastIndexOf('/');
+        if (lastSlash >= 0 && childrenOf.contains(path.substring(0, lastSlash))) {
+            return true;
+        }
+        if (!subPathsOf.isEmpty() && matchesSubPath(path)) {
+            return true;
+        }
+        if (!extensions.isEmpty() && path.startsWith("/")) {
+            int dot = path.lastIndexOf('.');
+            if (dot > lastSlash && extensions.contains(path.substring(dot))) {
+                return true;
+            }
+        }
+        for (Pattern regex : segmentWildcards) {
+            if (regex.matcher(path).matches()) {
+                return true;
+            }
+        }
+        for (RequestMatcher matcher : wildcards) {
+            if (matcher.matches(request)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean matchesSubPath(String path) {
+        if (subPathsOf.contains(path)) {
+            return true;
+        }
+        for (int i = path.indexOf('/', 1); i > 0; i = path.indexOf('/', i + 1)) {
+            if (subPathsOf.contains(path.substring(0, i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A segment that is just {@code *} must not be empty, as ant ignores empty path segments.
+     */
+    private static Pattern toRegex(String pattern) {
+        StringBuilder regex = new StringBuilder();
+        for (String segment : pattern.substring(1).split("/", -1)) {
+            regex.append('/');
+            if (segment.equals("*")) {
+                regex.append("[^/]+");
+                continue;
+            }
+            StringBuilder literal = new StringBuilder();
+            for (char c : segment.toCharArray()) {
+                if (c == '*' || c == '?') {
+                    regex.append(Pattern.quote(literal.toString())).append(c == '*' ? "[^/]*" : "[^/]");
+                    literal.setLength(0);
+                } else {
+                    literal.append(c);
+                }
+            }
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    private static boolean isExtension(String suffix) {
+        return !hasWildcard(suffix) && !StringUtils.containsAny(suffix, '/', '.');
+    }
+
+    private static boolean hasWildcard(String pattern) {
+        return StringUtils.containsAny(pattern, '*', '?', '{', '}');
+    }
+
+    /**
+     * Same path {@link AntPathRequestMatcher} matches against.
+     */
+    private static String getRequestPath(HttpServletRequest request) {
+        String url = request.getServletPath();
+        if (request.getPathInfo() != null) {
+            url += request.getPathInfo();
+        }
+        return url;
+    }
+}
@@ -1,81 +1,145 @@
 package com.cfgglobal.test.security;
 
-import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
 
 import javax.servlet.ReadListener;
 import javax.servlet.ServletInputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletRequestWrapper;
-import java.io.*;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
 
-@Slf4j
+/**
+ * Keeps a copy of the first bytes of the body while the application reads it, for the visit record.
+ * <p>
+ * Only bodies of the given content types are copied, at most {@code limit} bytes; the body itself is streamed
+ * through and never held in memory.
+ */
 public class AuthenticationRequestWrapper extends HttpServletRequestWrapper {
 
-    //post请求参数
-    private final String payload;
+    private final int limit;
 
-    public AuthenticationRequestWrapper(HttpServletRequest request) {
+    private final boolean capture;
+
+    private byte[] captured;
+
+    private int size;
+
+    private ServletInputStream inputStream;
+
+    private BufferedReader reader;
+
+    public AuthenticationRequestWrapper(HttpServletRequest request, int limit, Collection<String> contentTypes) {
         super(request);
-        // read the original payload into the payload variable
-        StringBuilder stringBuilder = new StringBuilder();
-        BufferedReader bufferedReader = null;
-        try {
-            // read the payload into the StringBuilder
-            InputStream inputStream = request.getInputStream();
-            if (inputStream != null) {
-                bufferedReader = new BufferedReader(new InputStreamReader(inputStream));
-                char[] charBuffer = new char[128];
-                int bytesRead = -1;
-                while ((bytesRead = bufferedReader.read(charBuffer)) > 0) {
-                    stringBuilder.append(charBuffer, 0, bytesRead);
-                }
-            } else {
-                // make an empty string since there is no payload
-                stringBuilder.append("");
-            }
-        } catch (IOException ex) {
-            ex.printStackTrace();
-        } finally {
-            if (bufferedReader != null) {
-                try {
-                    bufferedReader.close();
-                } catch (IOException iox) {
-                    // ignore
-                }
-            }
-        }
-        payload = stringBuilder.toString();
+        this.limit = limit;
+        String contentType = StringUtils.substringBefore(request.getContentType(), ";");
+        this.capture = limit > 0 && contentType != null && contentTypes.stream().anyMatch(type -> type.equalsIgnoreCase(contentType.trim()));
     }
 
     @Override
     public ServletInputStream getInputStream() throws IOException {
-        final ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(payload.getBytes());
-        ServletInputStream inputStream = new ServletInputStream() {
-            public int read()
-                    throws IOException {
-                return byteArrayInputStream.read();
-            }
+        if (inputStream == null) {
+            ServletInputStream original = super.getInputStream();
+            inputStream = capture ? new TeeInputStream(original) : original;
+        }
+        return inputStream;
+    }
 
-            @Override
-            public boolean isFinished() {
+    @Override
+    public BufferedReader getReader() throws IOException {
+        if (reader == null) {
+            reader = new BufferedReader(new InputStreamReader(getInputStream(), charset()));
+        }
+        return reader;
+    }
 
-                return false;
-            }
+    /**
+     * What the application has read of the body so far, null if the body is not captured.
+     */
+    public String getPayload() {
+        if (!capture) {
+            return null;
+        }
+        return captured == null ? "" : new String(captured, 0, size, charset());
+    }
+
+    private Charset charset() {
+        String encoding = getCharacterEncoding();
+        try {
+            return encoding == null ? StandardCharsets.UTF_8 : Charset.forName(encoding);
+        } catch (IllegalArgumentException e) {
+            return StandardCharsets.UTF_8;
+        }
+    }
+
+    private void copy(byte[] bytes, int offset, int length) {
+        int count = Math.min(length, limit - size);
+        if (count > 0) {
+            ensureCapacity(count);
+            System.arraycopy(bytes, offset, captured, size, count);
+            size += count;
+        }
+    }
+
+    private void copy(int b) {
+        if (size < limit) {
+            ensureCapacity(1);
+            captured[size++] = (byte) b;
+        }
+    }
+
+    private void ensureCapacity(int count) {
+        if (captured == null) {
+            captured = new byte[Math.min(limit, Math.max(256, count))];
+        } else if (captured.length < size + count) {
+            captured = Arrays.copyOf(captured, Math.min(limit, Math.max(captured.length * 2, size + count)));
+        }
+    }
+
+    private final class TeeInputStream extends ServletInputStream {
 
-            @Override
-            public boolean isReady() {
+        private final ServletInputStream original;
 
-                return false;
+        private TeeInputStream(ServletInputStream original) {
+            this.original = original;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = original.read();
+            if (b >= 0) {
+                copy(b);
             }
+            return b;
+        }
 
-            @Override
-            public void setReadListener(ReadListener readListener) {
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = original.read(b, off, len);
+            if (count > 0) {
+                copy(b, off, count);
             }
-        };
-        return inputStream;
-    }
+            return count;
+        }
 
-    public String getPayload() {
-        return payload;
+        @Override
+        public boolean isFinished() {
+            return original.isFinished();
+        }
+
+        @Override
+        public boolean isReady() {
+            return original.isReady();
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            original.setReadListener(readListener);
+        }
     }
-}
\ No newline at end of file
+}
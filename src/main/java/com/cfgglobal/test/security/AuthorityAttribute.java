@@ -0,0 +1,29 @@
+package com.cfgglobal.test.security;
+
+import org.springframework.security.access.SecurityConfig;
+
+/**
+ * A required authority with its {@link AuthorityDictionary} id resolved when permissions load.
+ */
+public class AuthorityAttribute extends SecurityConfig {
+
+    /**
+     * Required where there is no authority key, no one is granted it.
+     */
+    public static final AuthorityAttribute NOBODY = new AuthorityAttribute("NOBODY", -1);
+
+    private final int id;
+
+    public AuthorityAttribute(String authority) {
+        this(authority, AuthorityDictionary.intern(authority.trim()));
+    }
+
+    private AuthorityAttribute(String authority, int id) {
+        super(authority);
+        this.id = id;
+    }
+
+    public int getId() {
+        return id;
+    }
+}
@@ -0,0 +1,66 @@
+package com.cfgglobal.test.security;
+
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Gives every authority key a dense integer id, so that granted authorities can be held as a {@link BitSet}.
+ * <p>
+ * Keys are compared like {@link String#equalsIgnoreCase(String)}. Ids are never reused, a bitset computed
+ * before a reload stays valid after it.
+ */
+public final class AuthorityDictionary {
+
+    private static final ConcurrentMap<String, Integer> IDS = new ConcurrentHashMap<>();
+
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+    private AuthorityDictionary() {
+    }
+
+    public static int intern(String authority) {
+        return IDS.computeIfAbsent(normalize(authority), key -> NEXT_ID.getAndIncrement());
+    }
+
+    /**
+     * @return the id of the key, or -1 if no such authority was ever interned
+     */
+    public static int idOf(String authority) {
+        if (authority == null) {
+            return -1;
+        }
+        return IDS.getOrDefault(normalize(authority), -1);
+    }
+
+    public static BitSet bitsOf(Collection<? extends GrantedAuthority> authorities) {
+        BitSet bits = new BitSet();
+        if (authorities != null) {
+            for (GrantedAuthority authority : authorities) {
+                if (authority.getAuthority() != null) {
+                    bits.set(intern(authority.getAuthority()));
+                }
+            }
+        }
+        return bits;
+    }
+
+    public static int size() {
+        return IDS.size();
+    }
+
+    /**
+     * Two strings are equal ignoring case exactly when their characters fold to the same lower case of upper case.
+     */
+    private static String normalize(String authority) {
+        char[] chars = authority.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,172 @@
+package com.cfgglobal.test.security;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Concurrency limit of a group of endpoints, with a bounded queue of requests waiting for a slot.
+ * <p>
+ * An adaptive bulkhead moves its limit between {@code minLimit} and {@code maxLimit} AIMD style: every request
+ * that finishes within the latency threshold while the limit was in use adds {@code 1/limit}, a slower one cuts
+ * the limit by a tenth, at most once per threshold so that one burst of slow requests is one cut.
+ */
+public class Bulkhead {
+
+    private static final double DECREASE = 0.9;
+
+    private final String name;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final int queueSize;
+
+    private final long queueTimeoutNanos;
+
+    private final boolean adaptive;
+
+    private final long latencyThresholdNanos;
+
+    private final LongSupplier nanoClock;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition available = lock.newCondition();
+
+    private final LongAdder admitted = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder();
+
+    private final LongAdder timedOut = new LongAdder();
+
+    private double limit;
+
+    private int inFlight;
+
+    private int waiting;
+
+    private long lastDecrease;
+
+    public Bulkhead(String name, int minLimit, int maxLimit, int queueSize, long queueTimeoutMillis, boolean adaptive, long latencyThresholdMillis) {
+        this(name, minLimit, maxLimit, queueSize, queueTimeoutMillis, adaptive, latencyThresholdMillis, System::nanoTime);
+    }
+
+    Bulkhead(String name, int minLimit, int maxLimit, int queueSize, long queueTimeoutMillis, boolean adaptive, long latencyThresholdMillis, LongSupplier nanoClock) {
+        this.name = name;
+        this.minLimit = Math.max(1, Math.min(minLimit, maxLimit));
+        this.maxLimit = Math.max(1, maxLimit);
+        this.queueSize = Math.max(0, queueSize);
+        this.queueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(queueTimeoutMillis);
+        this.adaptive = adaptive;
+        this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThresholdMillis);
+        this.nanoClock = nanoClock;
+        this.limit = this.maxLimit;
+        this.lastDecrease = nanoClock.getAsLong() - latencyThresholdNanos;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Takes a slot, waiting in the queue while there is room in it.
+     *
+     * @return false if the queue is full or the wait timed out, the request must not run then
+     */
+    public boolean tryAcquire() throws InterruptedException {
+        lock.lock();
+        try {
+            if (waiting == 0 && inFlight < (int) limit) {
+                inFlight++;
+                admitted.increment();
+                return true;
+            }
+            if (waiting >= queueSize) {
+                rejected.increment();
+                return false;
+            }
+            waiting++;
+            try {
+                long remaining = queueTimeoutNanos;
+                while (inFlight >= (int) limit) {
+                    if (remaining <= 0) {
+                        timedOut.increment();
+                        return false;
+                    }
+                    remaining = available.awaitNanos(remaining);
+                }
+                inFlight++;
+                admitted.increment();
+                return true;
+            } finally {
+                waiting--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gives the slot back, {@code latencyNanos} is how long the request held it.
+     */
+    public void release(long latencyNanos) {
+        lock.lock();
+        try {
+            boolean saturated = inFlight >= (int) limit;
+            inFlight--;
+            if (adaptive) {
+                adapt(latencyNanos, saturated);
+            }
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void adapt(long latencyNanos, boolean saturated) {
+        if (latencyNanos > latencyThresholdNanos) {
+            long now = nanoClock.getAsLong();
+            if (now - lastDecrease >= latencyThresholdNanos) {
+                limit = Math.max(minLimit, limit * DECREASE);
+                lastDecrease = now;
+            }
+        } else if (saturated && limit < maxLimit) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+            available.signal();
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        lock.lock();
+        try {
+            return ImmutableMap.<String, Object>builder()
+                    .put("limit", (int) limit)
+                    .put("maxLimit", maxLimit)
+                    .put("adaptive", adaptive)
+                    .put("inFlight", inFlight)
+                    .put("waiting", waiting)
+                    .put("admitted", admitted.sum())
+                    .put("rejected", rejected.sum())
+                    .put("timedOut", timedOut.sum())
+                    .build();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.cfgglobal.test.security;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Budgets of this node only. Keys are spread over lock stripes, so concurrent requests of different
+ * users rarely wait on each other.
+ */
+@Component
+@ConditionalOnProperty(name = "mvc.action.report.firewall-store", havingValue = "memory", matchIfMissing = true)
+public class LocalRateLimiter implements RateLimiter {
+
+    private static final int STRIPES = 64;
+
+    /**
+     * A stripe drops counters of past windows once it holds this many keys.
+     */
+    private static final int SWEEP_SIZE = 1024;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    private final LongSupplier clock;
+
+    public LocalRateLimiter() {
+        this(System::currentTimeMillis);
+    }
+
+    LocalRateLimiter(LongSupplier clock) {
+        this.clock = clock;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    @Override
+    public boolean tryAcquire(String key, long limit, long windowMillis) {
+        long now = clock.getAsLong();
+        long window = now / windowMillis;
+        Stripe stripe = stripes[(key.hashCode() & 0x7fffffff) % STRIPES];
+        synchronized (stripe) {
+            Counter counter = stripe.counters.get(key);
+            if (counter == null) {
+                if (stripe.counters.size() >= SWEEP_SIZE) {
+                    stripe.counters.values().removeIf(c -> c.window < window - 1);
+                }
+                counter = new Counter();
+                counter.window = window;
+                stripe.counters.put(key, counter);
+            } else if (counter.window != window) {
+                counter.previous = counter.window == window - 1 ? counter.current : 0;
+                counter.current = 0;
+                counter.window = window;
+            }
+            if (RateLimiter.exceeds(counter.previous, counter.current, now, windowMillis, limit)) {
+                return false;
+            }
+            counter.current++;
+            return true;
+        }
+    }
+
+    private static class Stripe {
+        final Map<String, Counter> counters = new HashMap<>();
+    }
+
+    private static class Counter {
+        long window;
+        long previous;
+        long current;
+    }
+}
@@ -1,6 +1,5 @@
 package com.cfgglobal.test.security;
 
-import com.cfgglobal.test.cache.CacheClient;
 import com.cfgglobal.test.config.app.ApplicationProperties;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -28,12 +27,12 @@ public class LogoutSuccess implements LogoutSuccessHandler {
     ObjectMapper objectMapper;
 
     @Autowired
-    CacheClient cacheClient;
+    PrincipalCache principalCache;
 
     @Override
     public void onLogoutSuccess(HttpServletRequest httpServletRequest, HttpServletResponse response, Authentication authentication)
             throws IOException, ServletException {
-        cacheClient.deleteByKey(applicationProperties.getUserClass() + "-" + authentication.getName());
+        principalCache.evict(authentication.getName());
         Map<String, String> result = new HashMap<>();
         result.put("result", "success");
         response.setContentType("application/json");
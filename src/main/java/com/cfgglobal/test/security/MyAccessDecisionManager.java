@@ -1,13 +1,14 @@
 package com.cfgglobal.test.security;
 
+import com.cfgglobal.test.domain.User;
 import org.springframework.security.access.AccessDecisionManager;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.access.ConfigAttribute;
 import org.springframework.security.authentication.InsufficientAuthenticationException;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.GrantedAuthority;
 import org.springframework.stereotype.Service;
 
+import java.util.BitSet;
 import java.util.Collection;
 
 @Service
@@ -22,20 +23,27 @@ public class MyAccessDecisionManager implements AccessDecisionManager {
         if (configAttributes.isEmpty() || authentication instanceof AnonAuthentication) {
             return;
         }
-        ConfigAttribute c;
-        String needRole;
+        BitSet granted = grantedBits(authentication);
         for (ConfigAttribute configAttribute : configAttributes) {
-            c = configAttribute;
-            needRole = c.getAttribute();
-            for (GrantedAuthority ga : authentication.getAuthorities()) {//authentication 为在注释1 中循环添加到 GrantedAuthority 对象中的权限信息集合
-                if (needRole.trim().equalsIgnoreCase(ga.getAuthority())) {
-                    return;
-                }
+            int id = configAttribute instanceof AuthorityAttribute
+                    ? ((AuthorityAttribute) configAttribute).getId()
+                    : AuthorityDictionary.idOf(configAttribute.getAttribute() == null ? null : configAttribute.getAttribute().trim());
+            if (id >= 0 && granted.get(id)) {
+                return;
             }
         }
         throw new AccessDeniedException("no permission");
     }
 
+    // 用户的权限位图随 principal 缓存，其他类型的 authentication 每次计算
+    private BitSet grantedBits(Authentication authentication) {
+        if (authentication.getPrincipal() instanceof User) {
+            BitSet bits = ((User) authentication.getPrincipal()).getAuthorityBits();
+            return bits == null ? new BitSet() : bits;
+        }
+        return AuthorityDictionary.bitsOf(authentication.getAuthorities());
+    }
+
     @Override
     public boolean supports(ConfigAttribute attribute) {
         return true;
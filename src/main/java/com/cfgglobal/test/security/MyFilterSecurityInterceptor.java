@@ -1,15 +1,22 @@
 package com.cfgglobal.test.security;
 
+import com.cfgglobal.test.metrics.LatencyRegistry;
+import com.cfgglobal.test.metrics.LatencyRegistry.Stage;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.AccessDecisionManager;
+import org.springframework.security.access.ConfigAttribute;
 import org.springframework.security.access.SecurityMetadataSource;
 import org.springframework.security.access.intercept.AbstractSecurityInterceptor;
 import org.springframework.security.access.intercept.InterceptorStatusToken;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.web.FilterInvocation;
 import org.springframework.security.web.access.intercept.FilterInvocationSecurityMetadataSource;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
 import javax.servlet.*;
 import java.io.IOException;
+import java.util.Collection;
 
 @Service
 public class MyFilterSecurityInterceptor extends AbstractSecurityInterceptor implements Filter {
@@ -18,9 +25,19 @@ public class MyFilterSecurityInterceptor extends AbstractSecurityInterceptor imp
     @Autowired
     private FilterInvocationSecurityMetadataSource securityMetadataSource;
 
+    @Autowired
+    private LatencyRegistry latencyRegistry;
+
+    private SecurityMetadataSource timedMetadataSource;
+
     @Autowired
     public void setMyAccessDecisionManager(MyAccessDecisionManager myAccessDecisionManager) {
-        super.setAccessDecisionManager(myAccessDecisionManager);
+        super.setAccessDecisionManager(new TimedAccessDecisionManager(myAccessDecisionManager));
+    }
+
+    @PostConstruct
+    public void timeMetadataSource() {
+        timedMetadataSource = new TimedMetadataSource(securityMetadataSource);
     }
 
 
@@ -59,6 +76,64 @@ public class MyFilterSecurityInterceptor extends AbstractSecurityInterceptor imp
 
     @Override
     public SecurityMetadataSource obtainSecurityMetadataSource() {
-        return this.securityMetadataSource;
+        return this.timedMetadataSource;
+    }
+
+    private final class TimedMetadataSource implements FilterInvocationSecurityMetadataSource {
+
+        private final FilterInvocationSecurityMetadataSource delegate;
+
+        private TimedMetadataSource(FilterInvocationSecurityMetadataSource delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Collection<ConfigAttribute> getAttributes(Object object) {
+            long start = System.nanoTime();
+            try {
+                return delegate.getAttributes(object);
+            } finally {
+                latencyRegistry.recordStage(Stage.PERMISSION_MATCH, System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public Collection<ConfigAttribute> getAllConfigAttributes() {
+            return delegate.getAllConfigAttributes();
+        }
+
+        @Override
+        public boolean supports(Class<?> clazz) {
+            return delegate.supports(clazz);
+        }
+    }
+
+    private final class TimedAccessDecisionManager implements AccessDecisionManager {
+
+        private final AccessDecisionManager delegate;
+
+        private TimedAccessDecisionManager(AccessDecisionManager delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void decide(Authentication authentication, Object object, Collection<ConfigAttribute> configAttributes) {
+            long start = System.nanoTime();
+            try {
+                delegate.decide(authentication, object, configAttributes);
+            } finally {
+                latencyRegistry.recordStage(Stage.ACCESS_DECISION, System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public boolean supports(ConfigAttribute attribute) {
+            return delegate.supports(attribute);
+        }
+
+        @Override
+        public boolean supports(Class<?> clazz) {
+            return delegate.supports(clazz);
+        }
     }
 }
\ No newline at end of file
@@ -1,22 +1,17 @@
 package com.cfgglobal.test.security;
 
 import com.cfgglobal.test.dao.PermissionDao;
-import com.cfgglobal.test.domain.Permission;
-import io.vavr.control.Option;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
 import org.springframework.security.access.ConfigAttribute;
-import org.springframework.security.access.SecurityConfig;
 import org.springframework.security.web.FilterInvocation;
 import org.springframework.security.web.access.intercept.FilterInvocationSecurityMetadataSource;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
 import javax.servlet.http.HttpServletRequest;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.regex.Pattern;
-import java.util.stream.Stream;
 
 @Service
 public class MyInvocationSecurityMetadataSourceService implements FilterInvocationSecurityMetadataSource {
@@ -27,11 +22,19 @@ public class MyInvocationSecurityMetadataSourceService implements FilterInvocati
     @Autowired
     private PermissionDao permissionDao;
 
-    private List<Permission> permissions;
+    /**
+     * Swapped as a whole on reload, request threads always see a complete index, attributes included.
+     */
+    private volatile PermissionRouteIndex permissionRouteIndex = PermissionRouteIndex.EMPTY;
 
     @PostConstruct
-    private void loadPermissions() {
-        permissions = permissionDao.findAll();
+    public void loadPermissions() {
+        permissionRouteIndex = PermissionRouteIndex.of(permissionDao.findAll());
+    }
+
+    @EventListener
+    public void onSecurityChanged(SecurityChangedEvent event) {
+        loadPermissions();
     }
    /* public static ConfigAttribute getConfigAttributeDefinition() {
         return authorityHolder.get();
@@ -42,22 +45,7 @@ public class MyInvocationSecurityMetadataSourceService implements FilterInvocati
     @Override
     public List<ConfigAttribute> getAttributes(Object object) {
         HttpServletRequest request = ((FilterInvocation) object).getHttpRequest();
-        Option<Permission> permissionOpt = io.vavr.collection.List.ofAll(permissions)
-                .filter(resource -> Stream.of(resource.getAuthUris().split(";"))
-                        .anyMatch(uriPatten -> Pattern.matches(uriPatten, request.getRequestURI())))
-                .headOption();
-
-        if (permissionOpt.isDefined()) {
-            List<ConfigAttribute> configAttributes = new ArrayList<>();
-            SecurityConfig cfg = new SecurityConfig(permissionOpt.get().getAuthKey());
-            configAttributes.add(cfg);
-            //  authorityHolder.set(configAttributes.get(0));
-            return configAttributes;
-        } else {
-            return null;
-        }
-
-
+        return permissionRouteIndex.attributes(request.getMethod(), request.getRequestURI());
     }
 
     @Override
@@ -0,0 +1,208 @@
+package com.cfgglobal.test.security;
+
+import com.cfgglobal.test.domain.Permission;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.security.access.ConfigAttribute;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable lookup structure for {@link Permission#getAuthUris()}.
+ * <p>
+ * Every uri pattern is compiled once and filed under the first literal path segment that sits at a fixed
+ * position (e.g. {@code role} at index 2 for {@code /v[\d]+/role/[\d]+}), grouped by http method.
+ * A lookup only evaluates the patterns sharing a segment with the request uri, plus the few patterns that
+ * could not be anchored, such as patterns with a top-level alternation. When several permissions match, the one
+ * loaded first wins, as with the former linear scan.
+ * <p>
+ * The {@link ConfigAttribute}s of each permission are built with the index, so a lookup never pairs a permission of
+ * one index with the attributes of another.
+ */
+public final class PermissionRouteIndex {
+
+    public static final PermissionRouteIndex EMPTY = new PermissionRouteIndex(new ArrayList<>());
+
+    private static final String ANY_METHOD = "*";
+
+    /**
+     * A path segment that never matches '/' and so keeps the following segments at a fixed index.
+     */
+    private static final Pattern SINGLE_SEGMENT = Pattern.compile(
+            "(?:(?:[A-Za-z0-9_~-]|\\\\[dw]|\\[(?:\\\\[dw]|[A-Za-z0-9_-])+\\])(?:[+*?]|\\{\\d+(?:,\\d*)?\\})?)*");
+
+    private static final Pattern LITERAL_SEGMENT = Pattern.compile("[A-Za-z0-9_~-]+");
+
+    private final Map<String, MethodRoutes> routesByMethod = new HashMap<>();
+
+    private final int size;
+
+    private PermissionRouteIndex(List<Permission> permissions) {
+        int order = 0;
+        for (Permission permission : permissions) {
+            if (permission == null || permission.getAuthUris() == null) {
+                continue;
+            }
+            // a permission without an auth key stays protected, by an authority nobody holds
+            List<ConfigAttribute> attributes = Collections.singletonList(StringUtils.isBlank(permission.getAuthKey())
+                    ? AuthorityAttribute.NOBODY
+                    : new AuthorityAttribute(permission.getAuthKey()));
+            String method = StringUtils.isBlank(permission.getHttpMethod()) ? ANY_METHOD : permission.getHttpMethod().trim().toUpperCase(Locale.ROOT);
+            for (String uriPattern : permission.getAuthUris().split(";")) {
+                if (StringUtils.isBlank(uriPattern)) {
+                    continue;
+                }
+                Route route = new Route(order, Pattern.compile(uriPattern), permission, attributes);
+                if (!ANY_METHOD.equals(method)) {
+                    routesByMethod.computeIfAbsent(method, e -> new MethodRoutes()).add(route);
+                }
+                routesByMethod.computeIfAbsent(ANY_METHOD, e -> new MethodRoutes()).add(route);
+            }
+            order++;
+        }
+        this.size = order;
+    }
+
+    public static PermissionRouteIndex of(Collection<Permission> permissions) {
+        return new PermissionRouteIndex(new ArrayList<>(permissions));
+    }
+
+    /**
+     * Finds the permission guarding {@code uri}. Permissions declared for {@code method} are preferred,
+     * otherwise the first permission whose pattern matches the uri regardless of method is returned.
+     *
+     * @return the permission, or <code>null</code> when the uri is not protected
+     */
+    public Permission find(String method, String uri) {
+        Route route = route(method, uri);
+        return route == null ? null : route.permission;
+    }
+
+    /**
+     * The attributes of the permission {@link #find(String, String)} returns.
+     *
+     * @return the attributes, or <code>null</code> when the uri is not protected
+     */
+    public List<ConfigAttribute> attributes(String method, String uri) {
+        Route route = route(method, uri);
+        return route == null ? null : route.attributes;
+    }
+
+    private Route route(String method, String uri) {
+        if (uri == null) {
+            return null;
+        }
+        String[] segments = uri.split("/", -1);
+        if (method != null) {
+            MethodRoutes routes = routesByMethod.get(method.toUpperCase(Locale.ROOT));
+            Route route = routes == null ? null : routes.find(uri, segments);
+            if (route != null) {
+                return route;
+            }
+        }
+        MethodRoutes routes = routesByMethod.get(ANY_METHOD);
+        return routes == null ? null : routes.find(uri, segments);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static final class Route {
+        final int order;
+        final Pattern pattern;
+        final Permission permission;
+        final List<ConfigAttribute> attributes;
+
+        Route(int order, Pattern pattern, Permission permission, List<ConfigAttribute> attributes) {
+            this.order = order;
+            this.pattern = pattern;
+            this.permission = permission;
+            this.attributes = attributes;
+        }
+    }
+
+    private static final class MethodRoutes {
+
+        /**
+         * segment index -> literal segment -> routes in load order
+         */
+        final List<Map<String, List<Route>>> anchored = new ArrayList<>();
+
+        final List<Route> unanchored = new ArrayList<>();
+
+        void add(Route route) {
+            if (hasTopLevelAlternation(route.pattern.pattern())) {
+                // the segment of the first alternative says nothing about the others
+                unanchored.add(route);
+                return;
+            }
+            String[] segments = route.pattern.pattern().split("/", -1);
+            for (int i = 0; i < segments.length; i++) {
+                if (i > 0 && LITERAL_SEGMENT.matcher(segments[i]).matches()) {
+                    while (anchored.size() <= i) {
+                        anchored.add(new HashMap<>());
+                    }
+                    anchored.get(i).computeIfAbsent(segments[i], e -> new ArrayList<>()).add(route);
+                    return;
+                }
+                if (!SINGLE_SEGMENT.matcher(segments[i]).matches()) {
+                    break;
+                }
+            }
+            unanchored.add(route);
+        }
+
+        static boolean hasTopLevelAlternation(String regex) {
+            int depth = 0;
+            boolean inClass = false;
+            for (int i = 0; i < regex.length(); i++) {
+                char c = regex.charAt(i);
+                if (c == '\\') {
+                    i++;
+                } else if (inClass) {
+                    inClass = c != ']';
+                } else if (c == '[') {
+                    inClass = true;
+                } else if (c == '(') {
+                    depth++;
+                } else if (c == ')') {
+                    depth--;
+                } else if (c == '|' && depth == 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        Route find(String uri, String[] segments) {
+            Route best = null;
+            int positions = Math.min(segments.length, anchored.size());
+            for (int i = 1; i < positions; i++) {
+                List<Route> candidates = anchored.get(i).get(segments[i]);
+                if (candidates != null) {
+                    best = firstMatch(candidates, uri, best);
+                }
+            }
+            return firstMatch(unanchored, uri, best);
+        }
+
+        private static Route firstMatch(List<Route> candidates, String uri, Route best) {
+            for (Route route : candidates) {
+                if (best != null && route.order >= best.order) {
+                    return best;
+                }
+                if (route.pattern.matcher(uri).matches()) {
+                    return route;
+                }
+            }
+            return best;
+        }
+    }
+}
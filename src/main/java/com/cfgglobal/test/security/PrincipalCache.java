@@ -0,0 +1,162 @@
+package com.cfgglobal.test.security;
+
+import com.cfgglobal.test.cache.CacheClient;
+import com.cfgglobal.test.cache.MessageBroker;
+import com.cfgglobal.test.config.app.ApplicationProperties;
+import com.cfgglobal.test.domain.User;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Two tier cache of authenticated principals: an in-process cache (L1) in front of the shared {@link CacheClient} (L2).
+ * <p>
+ * Every node drops its L1 when permissions, roles or rules change ({@link SecurityChangedEvent}); the node where
+ * the change happened also clears L2. A changed user is evicted from L2 and, through the {@link MessageBroker},
+ * from the L1 of every node.
+ */
+@Slf4j
+@Component
+@EnableConfigurationProperties(value = ApplicationProperties.class)
+public class PrincipalCache {
+
+    public static final String CHANNEL = "access-control:principal-evicted";
+
+    private static final String SEPARATOR = ":";
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final LongAdder remoteHits = new LongAdder();
+
+    private final LongAdder remoteMisses = new LongAdder();
+
+    private final LongAdder remoteFailures = new LongAdder();
+
+    private final LongAdder remoteNanos = new LongAdder();
+
+    private Cache<String, User> local;
+
+    @Autowired
+    private CacheClient cacheClient;
+
+    @Autowired
+    private MessageBroker messageBroker;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
+    @PostConstruct
+    public void init() {
+        ApplicationProperties.NearCache nearCache = applicationProperties.getNearCache();
+        local = CacheBuilder.newBuilder()
+                .maximumSize(nearCache.getSize())
+                .expireAfterWrite(nearCache.getTtl(), TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        messageBroker.subscribe(CHANNEL, this::onMessage);
+    }
+
+    public User get(String username, Supplier<User> loader) {
+        String key = key(username);
+        User user = local.getIfPresent(key);
+        if (user != null) {
+            return user;
+        }
+        user = getRemote(key);
+        if (user == null) {
+            try {
+                user = loader.get();
+            } catch (Exception e) {
+                log.error("cannot load user {}, {}", username, e.getMessage());
+                return null;
+            }
+            if (user == null) {
+                return null;
+            }
+            cacheClient.set(key, user);
+        }
+        local.put(key, user);
+        return user;
+    }
+
+    public void put(String username, User user) {
+        String key = key(username);
+        cacheClient.set(key, user);
+        local.put(key, user);
+    }
+
+    /**
+     * Evicts the user from L2 and from the L1 of every node once the surrounding transaction has committed.
+     */
+    public void evictAfterCommit(String username) {
+        SecurityInvalidator.afterCommit(() -> evict(username));
+    }
+
+    public void evict(String username) {
+        String key = key(username);
+        cacheClient.deleteByKey(key);
+        local.invalidate(key);
+        messageBroker.publish(CHANNEL, nodeId + SEPARATOR + username);
+    }
+
+    @EventListener
+    public void onSecurityChanged(SecurityChangedEvent event) {
+        if (!event.isRemote()) {
+            cacheClient.deleteByPattern(key("*"));
+        }
+        local.invalidateAll();
+    }
+
+    public CacheStats localStats() {
+        return local.stats();
+    }
+
+    /**
+     * Load time is the L2 round trip including deserialization.
+     */
+    public CacheStats remoteStats() {
+        long hits = remoteHits.sum();
+        return new CacheStats(hits, remoteMisses.sum(), hits, remoteFailures.sum(), remoteNanos.sum(), 0);
+    }
+
+    private User getRemote(String key) {
+        long start = System.nanoTime();
+        User user;
+        try {
+            user = cacheClient.get(key);
+        } catch (Exception e) {
+            log.error("Query key [{}] from cache failure", key, e);
+            remoteFailures.increment();
+            return null;
+        }
+        if (user == null) {
+            remoteMisses.increment();
+        } else {
+            remoteNanos.add(System.nanoTime() - start);
+            remoteHits.increment();
+        }
+        return user;
+    }
+
+    private void onMessage(String message) {
+        if (!nodeId.equals(StringUtils.substringBefore(message, SEPARATOR))) {
+            local.invalidate(key(StringUtils.substringAfter(message, SEPARATOR)));
+        }
+    }
+
+    private String key(String username) {
+        return applicationProperties.getUserClass() + "-" + username;
+    }
+}
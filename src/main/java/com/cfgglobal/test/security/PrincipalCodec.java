@@ -0,0 +1,98 @@
+package com.cfgglobal.test.security;
+
+import com.cfgglobal.test.cache.ValueCodec;
+import com.cfgglobal.test.domain.Branch;
+import com.cfgglobal.test.domain.Role;
+import com.cfgglobal.test.domain.User;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Keeps only what authentication and the access rules read from a principal: id and version, username, branch id,
+ * role id and version, and authority keys. The user's version keeps a decoded principal detached rather than transient
+ * for Hibernate, e.g. as the auditor of {@code @CreatedBy}. The role's permissions are looked up by role id and version,
+ * see {@link com.cfgglobal.test.service.rule.SecurityFilterImpl}.
+ * <p>
+ * A principal of a {@link User} subclass is read back as a plain {@link User}.
+ */
+public class PrincipalCodec implements ValueCodec<User> {
+
+    public static final byte TAG = 1;
+
+    private static final byte VERSION = 3;
+
+    @Override
+    public void write(User user, DataOutput out) throws IOException {
+        out.writeByte(VERSION);
+        writeLong(out, user.getId());
+        writeLong(out, user.getVersion());
+        out.writeUTF(user.getUsername());
+        writeLong(out, user.getBranch() == null ? null : user.getBranch().getId());
+        writeLong(out, user.getRole() == null ? null : user.getRole().getId());
+        writeLong(out, user.getRole() == null ? null : user.getRole().getVersion());
+        Collection<? extends GrantedAuthority> authorities = user.getAuthorities();
+        if (authorities == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(authorities.size());
+        for (GrantedAuthority authority : authorities) {
+            out.writeUTF(authority.getAuthority());
+        }
+    }
+
+    @Override
+    public User read(DataInput in) throws IOException {
+        byte version = in.readByte();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported principal version " + version);
+        }
+        User user = new User();
+        user.setId(readLong(in));
+        if (version >= 3) {
+            user.setVersion(readLong(in));
+        }
+        user.setUsername(in.readUTF());
+        Long branchId = readLong(in);
+        if (branchId != null) {
+            Branch branch = new Branch();
+            branch.setId(branchId);
+            user.setBranch(branch);
+        }
+        Long roleId = readLong(in);
+        Long roleVersion = version >= 2 ? readLong(in) : null;
+        if (roleId != null) {
+            Role role = new Role();
+            role.setId(roleId);
+            role.setVersion(roleVersion);
+            user.setRole(role);
+        }
+        int size = in.readInt();
+        if (size >= 0) {
+            List<GrantedAuthority> authorities = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                authorities.add(new SimpleGrantedAuthority(in.readUTF()));
+            }
+            user.setGrantedAuthorities(authorities);
+        }
+        return user;
+    }
+
+    private static void writeLong(DataOutput out, Long value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value);
+        }
+    }
+
+    private static Long readLong(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readLong() : null;
+    }
+}
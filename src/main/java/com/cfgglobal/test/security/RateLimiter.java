@@ -0,0 +1,22 @@
+package com.cfgglobal.test.security;
+
+/**
+ * Sliding window request budget per key (a user or a client ip).
+ * <p>
+ * The count of the previous window is weighted by how much of it still overlaps the sliding window,
+ * which smooths out the burst a fixed window allows at its boundary.
+ */
+public interface RateLimiter {
+
+    /**
+     * Takes one request from the budget of the key.
+     *
+     * @return false if the key already used {@code limit} requests in the last {@code windowMillis}
+     */
+    boolean tryAcquire(String key, long limit, long windowMillis);
+
+    static boolean exceeds(long previous, long current, long now, long windowMillis, long limit) {
+        double overlap = 1 - (double) (now % windowMillis) / windowMillis;
+        return previous * overlap + current >= limit;
+    }
+}
@@ -0,0 +1,53 @@
+package com.cfgglobal.test.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Budgets shared by all nodes, one Redis counter per key and window. When Redis is unavailable requests are let through.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "mvc.action.report.firewall-store", havingValue = "redis")
+public class RedisRateLimiter implements RateLimiter {
+
+    private static final String PREFIX = "access-control:rate:";
+
+    @Autowired
+    private StringRedisTemplate template;
+
+    private LongSupplier clock = System::currentTimeMillis;
+
+    @Override
+    public boolean tryAcquire(String key, long limit, long windowMillis) {
+        long now = clock.getAsLong();
+        long window = now / windowMillis;
+        String currentKey = PREFIX + key + ":" + window;
+        try {
+            Long current = template.opsForValue().increment(currentKey, 1);
+            if (current == 1) {
+                template.expire(currentKey, 2 * windowMillis, TimeUnit.MILLISECONDS);
+            }
+            long previous = NumberUtils.toLong(template.opsForValue().get(PREFIX + key + ":" + (window - 1)));
+            if (RateLimiter.exceeds(previous, current - 1, now, windowMillis, limit)) {
+                template.opsForValue().increment(currentKey, -1);
+                return false;
+            }
+            return true;
+        } catch (Exception e) {
+            log.error("Rate limit of [{}] unavailable", key, e);
+            return true;
+        }
+    }
+
+    void setClock(LongSupplier clock) {
+        this.clock = clock;
+    }
+}
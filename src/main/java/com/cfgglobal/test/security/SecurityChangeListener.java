@@ -0,0 +1,96 @@
+package com.cfgglobal.test.security;
+
+import com.cfgglobal.test.domain.Branch;
+import com.cfgglobal.test.domain.Permission;
+import com.cfgglobal.test.domain.Role;
+import com.cfgglobal.test.domain.RolePermission;
+import com.cfgglobal.test.domain.Rule;
+import com.cfgglobal.test.domain.User;
+import com.cfgglobal.test.service.BranchService;
+import io.vavr.collection.List;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.*;
+import org.hibernate.internal.SessionFactoryImpl;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Invalidates the security snapshot whenever a {@link Permission}, {@link Role}, {@link RolePermission}
+ * or {@link Rule} is written, the cached principal whenever a {@link User} is, and the branch tree whenever a
+ * {@link Branch} is, whichever dao or service did it.
+ */
+@Component
+public class SecurityChangeListener implements PostInsertEventListener, PostUpdateEventListener,
+        PostDeleteEventListener, PostCollectionUpdateEventListener {
+
+    private static final List<Class<?>> WATCHED = List.of(Permission.class, Role.class, RolePermission.class, Rule.class);
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private SecurityInvalidator securityInvalidator;
+
+    @Autowired
+    private PrincipalCache principalCache;
+
+    @Autowired
+    private BranchService branchService;
+
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImpl.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+        registry.appendListeners(EventType.POST_COLLECTION_UPDATE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        changed(event.getEntity(), "insert");
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (event.getEntity() instanceof User && event.getOldState() != null) {
+            int username = event.getPersister().getEntityMetamodel().getPropertyIndex("username");
+            Object oldUsername = event.getOldState()[username];
+            if (oldUsername != null) {
+                principalCache.evictAfterCommit(oldUsername.toString());
+            }
+        }
+        changed(event.getEntity(), "update");
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        changed(event.getEntity(), "delete");
+    }
+
+    @Override
+    public void onPostUpdateCollection(PostCollectionUpdateEvent event) {
+        changed(event.getAffectedOwnerOrNull(), "update collection");
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    private void changed(Object entity, String action) {
+        if (entity instanceof User) {
+            principalCache.evictAfterCommit(((User) entity).getUsername());
+        } else if (entity instanceof Branch) {
+            branchService.treeChanged();
+        } else if (entity != null && WATCHED.exists(type -> type.isInstance(entity))) {
+            securityInvalidator.invalidateAfterCommit(action + " " + entity.getClass().getSimpleName());
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.cfgglobal.test.security;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published when permissions, roles or rules changed, locally or on another node.
+ * Listeners should rebuild whatever they derived from them.
+ */
+@Getter
+public class SecurityChangedEvent extends ApplicationEvent {
+
+    private final String reason;
+
+    private final boolean remote;
+
+    public SecurityChangedEvent(Object source, String reason, boolean remote) {
+        super(source);
+        this.reason = reason;
+        this.remote = remote;
+    }
+}
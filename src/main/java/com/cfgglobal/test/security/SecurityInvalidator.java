@@ -0,0 +1,106 @@
+package com.cfgglobal.test.security;
+
+import com.cfgglobal.test.cache.MessageBroker;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Fans a security change out as a {@link SecurityChangedEvent}, on this node and, through the
+ * {@link MessageBroker}, on every other node. Bursts of changes (e.g. {@code /sys/assign}) collapse into one rebuild.
+ */
+@Slf4j
+@Component
+public class SecurityInvalidator {
+
+    public static final String CHANNEL = "access-control:security-changed";
+
+    private static final String SEPARATOR = ":";
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final AtomicBoolean pending = new AtomicBoolean();
+
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "security-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private Executor executor = rebuildExecutor;
+
+    @Autowired
+    private MessageBroker messageBroker;
+
+    @Autowired
+    private ApplicationEventPublisher publisher;
+
+    @PostConstruct
+    public void subscribe() {
+        messageBroker.subscribe(CHANNEL, this::onMessage);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    /**
+     * Schedules a rebuild once the surrounding transaction, if any, has committed.
+     */
+    public void invalidateAfterCommit(String reason) {
+        afterCommit(() -> invalidate(reason));
+    }
+
+    public void invalidate(String reason) {
+        if (pending.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                pending.set(false);
+                log.info("security changed: {}", reason);
+                publisher.publishEvent(new SecurityChangedEvent(this, reason, false));
+                messageBroker.publish(CHANNEL, nodeId + SEPARATOR + reason);
+            });
+        }
+    }
+
+    private void onMessage(String message) {
+        if (nodeId.equals(StringUtils.substringBefore(message, SEPARATOR))) {
+            return;
+        }
+        String reason = StringUtils.substringAfter(message, SEPARATOR);
+        log.info("security changed on another node: {}", reason);
+        publisher.publishEvent(new SecurityChangedEvent(this, reason, true));
+    }
+
+    /**
+     * Runs the action once the surrounding transaction, if any, has committed.
+     */
+    public static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+}
@@ -3,31 +3,36 @@ package com.cfgglobal.test.security;
 import com.cfgglobal.test.base.ApiResp;
 import com.cfgglobal.test.config.ActionReportProperties;
 import com.cfgglobal.test.config.app.ApplicationProperties;
-import com.cfgglobal.test.config.jpa.SecurityAuditor;
+import com.cfgglobal.test.domain.User;
 import com.cfgglobal.test.domain.VisitRecord;
-import com.cfgglobal.test.service.VisitRecordService;
+import com.cfgglobal.test.metrics.LatencyRegistry;
+import com.cfgglobal.test.metrics.LatencyRegistry.Stage;
+import com.cfgglobal.test.metrics.ThreadResourceMeter;
+import com.cfgglobal.test.service.VisitRecordWriter;
+import com.cfgglobal.test.service.VisitRollupAggregator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.vavr.Tuple;
+import io.vavr.Tuple2;
 import io.vavr.collection.List;
 import io.vavr.control.Option;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
-import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
-import org.springframework.security.web.util.matcher.OrRequestMatcher;
 import org.springframework.security.web.util.matcher.RequestMatcher;
 import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
 
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.time.Instant;
-
-import static com.cfgglobal.test.service.VisitRecordService.THRESHOLD;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 
 @Slf4j
@@ -42,8 +47,30 @@ public class TokenAuthenticationFilter extends OncePerRequestFilter {
     private static final String IMG_MATCHER = "/images/*";
     private static final String LOGIN_MATCHER = "/login";
     private static final String LOGOUT_MATCHER = "/logout";
-    @Autowired
-    SecurityAuditor securityAuditor;
+    private static final List<String> DEFAULT_PATHS_TO_SKIP = List.of(
+            ROOT_MATCHER,
+            HTML_MATCHER,
+            FAVICON_MATCHER,
+            CSS_MATCHER,
+            JS_MATCHER,
+            IMG_MATCHER,
+            LOGIN_MATCHER,
+            LOGOUT_MATCHER,
+            "/v1/payment/*",
+            "/v1/code/*",
+            "/sys/*",
+            "/files/*",
+            "/images/mail/*",
+            "/v1/transaction/*/receipt", //for email
+            "/less/*",
+            "/less/material/*",
+            "/images/payment/*"
+    );
+    /**
+     * Never anonymous, even where a path to skip or anonymous url covers them. Matched as prefixes, so that the
+     * suffix patterns and trailing slashes Spring MVC maps to the same handlers, e.g. {@code /sys/profile.json}, are too.
+     */
+    private static final List<String> ALWAYS_AUTHENTICATED = List.of("/sys/profile", "/sys/metrics/resources");
     @Autowired
     TokenHelper tokenHelper;
     @Autowired
@@ -55,7 +82,20 @@ public class TokenAuthenticationFilter extends OncePerRequestFilter {
     @Autowired
     private ActionReportProperties actionReportProperties;
     @Autowired
-    private VisitRecordService visitRecordService;
+    private VisitRecordWriter visitRecordWriter;
+    @Autowired
+    private VisitRollupAggregator visitRollupAggregator;
+    @Autowired
+    private RateLimiter rateLimiter;
+    @Autowired
+    private LatencyRegistry latencyRegistry;
+    @Autowired
+    private ThreadResourceMeter threadResourceMeter;
+
+    /**
+     * Compiled from {@code jwt.anonymousUrls}, rebuilt only when that property changes.
+     */
+    private volatile Tuple2<String, RequestMatcher> pathsToSkip;
 
     private static String getClientIp(HttpServletRequest request) {
         return Option.of(request.getHeader("X-Forwarded-For")).getOrElse(request.getRemoteAddr());
@@ -63,80 +103,94 @@ public class TokenAuthenticationFilter extends OncePerRequestFilter {
 
     @Override
     public void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws IOException, ServletException {
-        long start = Instant.now().getEpochSecond();
-        AuthenticationRequestWrapper wrapRequest = new AuthenticationRequestWrapper(request);
-        List<String> pathsToSkip = Option.of(applicationProperties.getJwt().getAnonymousUrls())
-                .map(url -> url.split(","))
-                .map(List::of)
-                .getOrElse(List.empty());
-
-        pathsToSkip = pathsToSkip.appendAll(List.of(
-                ROOT_MATCHER,
-                HTML_MATCHER,
-                FAVICON_MATCHER,
-                CSS_MATCHER,
-                JS_MATCHER,
-                IMG_MATCHER,
-                LOGIN_MATCHER,
-                LOGOUT_MATCHER,
-                "/v1/payment/*",
-                "/v1/code/*",
-                "/sys/*",
-                "/files/*",
-                "/images/mail/*",
-                "/v1/transaction/*/receipt", //for email
-                "/v1/payment/*",
-                "/less/*",
-                "/less/material/*",
-                "/images/payment/*"
-
-        ));
-
+        long start = System.nanoTime();
+        boolean metered = threadResourceMeter.isEnabled();
+        long allocatedBytes = metered ? threadResourceMeter.allocatedBytes() : 0;
+        long cpuTime = metered ? threadResourceMeter.cpuTime() : 0;
+        AuthenticationRequestWrapper wrapRequest = new AuthenticationRequestWrapper(request,
+                actionReportProperties.isVisitRecord() ? actionReportProperties.getRequestBodyLimit() : 0,
+                actionReportProperties.getRequestBodyTypes());
         String authToken = tokenHelper.getToken(request);
-        if (skipPathRequest(request, pathsToSkip)) {
+        if (skipPathRequest(request)) {
             SecurityContextHolder.getContext().setAuthentication(new AnonAuthentication());
-            chain.doFilter(wrapRequest, response);
+            if (!tooManyRequests(request, response, null)) {
+                chain.doFilter(wrapRequest, response);
+            }
         } else if (authToken != null && !authToken.equals("null") && !authToken.equals("undefined")) {
+            long parseStart = System.nanoTime();
             String username = tokenHelper.getUsernameFromToken(authToken);
+            latencyRegistry.recordStage(Stage.TOKEN_PARSE, System.nanoTime() - parseStart);
             if (username == null) {
                 log.error("username is null , token {}", authToken);
                 loginExpired(request, response);
             } else {
+                long loadStart = System.nanoTime();
                 UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+                latencyRegistry.recordStage(Stage.USER_LOAD, System.nanoTime() - loadStart);
                 TokenBasedAuthentication authentication = new TokenBasedAuthentication(userDetails);
                 authentication.setToken(authToken);
                 SecurityContextHolder.getContext().setAuthentication(authentication);
-                chain.doFilter(wrapRequest, response);
+                if (!tooManyRequests(request, response, userDetails)) {
+                    chain.doFilter(wrapRequest, response);
+                }
             }
         } else {
             System.out.println("URI" + request.getRequestURI());
             loginExpired(request, response);
         }
 
-        if (actionReportProperties.isFirewall()) {
-            if(visitRecordService.hasTooManyRequest(securityAuditor.getCurrentAuditor(), getClientIp(request))){
-                ApiResp apiResp = new ApiResp();
-                apiResp.setError(THRESHOLD + " requests allowed per min, if you need more, please contact us.");
-                String msg = objectMapper.writeValueAsString(apiResp);
-                response.setStatus(429);
-                response.getWriter().write(msg);
-            }
+        long elapsed = System.nanoTime() - start;
+        String pattern = (String) request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        latencyRegistry.recordEndpoint(request.getMethod(), pattern, elapsed);
+        if (metered) {
+            allocatedBytes = threadResourceMeter.allocatedBytes() - allocatedBytes;
+            cpuTime = threadResourceMeter.cpuTime() - cpuTime;
+            latencyRegistry.recordResources(request.getMethod(), pattern, allocatedBytes, cpuTime);
         }
-
         if (actionReportProperties.isVisitRecord()) {
-            long end = Instant.now().getEpochSecond();
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
             VisitRecord visitRecord = new VisitRecord()
                     .setIp(getClientIp(request))
                     .setMethod(request.getMethod())
                     .setUri(request.getRequestURI())
                     .setRequestBody(wrapRequest.getPayload())
                     .setQueryString(request.getQueryString())
-                    .setExecutionTime(end - start);
-            visitRecordService.save(visitRecord);
+                    .setExecutionTime(TimeUnit.NANOSECONDS.toMillis(elapsed))
+                    .setStatus(response.getStatus());
+            if (metered) {
+                visitRecord.setAllocatedBytes(allocatedBytes).setCpuTime(cpuTime);
+            }
+            if (authentication != null && authentication.getPrincipal() instanceof User) {
+                visitRecord.setCreator((User) authentication.getPrincipal());
+            }
+            visitRollupAggregator.record(visitRecord, pattern, visitRecord.getExecutionTime());
+            visitRecordWriter.offer(visitRecord);
         }
 
     }
 
+    /**
+     * Budget of the user, or of the client ip for anonymous requests. Rejected requests never reach the chain.
+     */
+    private boolean tooManyRequests(HttpServletRequest request, HttpServletResponse response, UserDetails user) throws IOException {
+        if (!actionReportProperties.isFirewall()) {
+            return false;
+        }
+        String key = user instanceof User ? "user:" + ((User) user).getId() : "ip:" + getClientIp(request);
+        long limit = actionReportProperties.getFirewallLimits().getOrDefault(key, actionReportProperties.getFirewallLimit());
+        long window = actionReportProperties.getFirewallWindow();
+        if (rateLimiter.tryAcquire(key, limit, window * 1000)) {
+            return false;
+        }
+        ApiResp apiResp = new ApiResp();
+        apiResp.setError(limit + " requests allowed per " + window + "s, if you need more, please contact us.");
+        String msg = objectMapper.writeValueAsString(apiResp);
+        response.setStatus(429);
+        response.setHeader("Retry-After", String.valueOf(window));
+        response.getWriter().write(msg);
+        return true;
+    }
+
     private void loginExpired(HttpServletRequest request, HttpServletResponse response) throws IOException {
         logger.warn(request.getMethod() + request.getRequestURI());
         ApiResp apiResp = new ApiResp();
@@ -146,8 +200,23 @@ public class TokenAuthenticationFilter extends OncePerRequestFilter {
         response.getWriter().write(msg);
     }
 
-    private boolean skipPathRequest(HttpServletRequest request, List<String> pathsToSkip) {
-        List<RequestMatcher> m = pathsToSkip.map(AntPathRequestMatcher::new);
-        return new OrRequestMatcher(m.toJavaList()).matches(request);
+    private boolean skipPathRequest(HttpServletRequest request) {
+        String anonymousUrls = applicationProperties.getJwt().getAnonymousUrls();
+        Tuple2<String, RequestMatcher> matcher = pathsToSkip;
+        if (matcher == null || !Objects.equals(matcher._1, anonymousUrls)) {
+            matcher = Tuple.of(anonymousUrls, AnonymousPathMatcher.of(Option.of(anonymousUrls)
+                    .map(url -> url.split(","))
+                    .map(List::of)
+                    .getOrElse(List.empty())
+                    .appendAll(DEFAULT_PATHS_TO_SKIP)
+                    .toJavaList()));
+            pathsToSkip = matcher;
+        }
+        return matcher._2.matches(request) && !alwaysAuthenticated(request);
+    }
+
+    private static boolean alwaysAuthenticated(HttpServletRequest request) {
+        String path = request.getServletPath() + Objects.toString(request.getPathInfo(), "");
+        return ALWAYS_AUTHENTICATED.exists(path::startsWith);
     }
 }
\ No newline at end of file
@@ -1,6 +1,10 @@
 package com.cfgglobal.test.security;
 
 import com.cfgglobal.test.config.app.ApplicationProperties;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.hash.Hashing;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
@@ -12,10 +16,13 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 
 @EnableConfigurationProperties(value = {ApplicationProperties.class})
@@ -29,6 +36,25 @@ public class TokenHelper {
     @Value("${spring.application.name}")
     private String APP_NAME;
     private SignatureAlgorithm SIGNATURE_ALGORITHM = SignatureAlgorithm.HS512;
+    /**
+     * Verified claims keyed by the sha256 of the token, so that the token itself is never held as a key.
+     * A cached entry is dropped once the token's exp has passed.
+     */
+    private Cache<String, Claims> claimsCache;
+
+    @PostConstruct
+    public void initClaimsCache() {
+        ApplicationProperties.Jwt jwt = applicationProperties.getJwt();
+        claimsCache = CacheBuilder.newBuilder()
+                .maximumSize(jwt.getClaimsCacheSize())
+                .expireAfterWrite(jwt.getExpiresIn(), TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+    }
+
+    public CacheStats claimsCacheStats() {
+        return claimsCache.stats();
+    }
 
     public String getUsernameFromToken(String token) {
         String username;
@@ -53,15 +79,31 @@ public class TokenHelper {
                 .compact();
     }
 
+    /**
+     * The returned claims may be shared with other requests, copy them before changing anything.
+     */
     private Claims getClaimsFromToken(String token) {
-        Claims claims;
+        if (token == null) {
+            return null;
+        }
+        String key = Hashing.sha256().hashString(token, StandardCharsets.UTF_8).toString();
+        Claims claims = claimsCache.getIfPresent(key);
+        if (claims != null) {
+            if (claims.getExpiration().after(generateCurrentDate())) {
+                return claims;
+            }
+            claimsCache.invalidate(key);
+        }
         try {
             claims = Jwts.parser()
                     .setSigningKey(applicationProperties.getJwt().getSecret())
                     .parseClaimsJws(token)
                     .getBody();
         } catch (Exception e) {
-            claims = null;
+            return null;
+        }
+        if (claims.getExpiration() != null) {
+            claimsCache.put(key, claims);
         }
         return claims;
     }
@@ -76,8 +118,9 @@ public class TokenHelper {
 
     public Boolean canTokenBeRefreshed(String token) {
         try {
-            final Date expirationDate = getClaimsFromToken(token).getExpiration();
-            String username = getUsernameFromToken(token);
+            final Claims claims = getClaimsFromToken(token);
+            final Date expirationDate = claims.getExpiration();
+            String username = claims.getSubject();
             UserDetails userDetails = userDetailsService.loadUserByUsername(username);
             return expirationDate.compareTo(generateCurrentDate()) > 0;
         } catch (Exception e) {
@@ -88,7 +131,7 @@ public class TokenHelper {
     public String refreshToken(String token) {
         String refreshedToken;
         try {
-            final Claims claims = getClaimsFromToken(token);
+            final Claims claims = Jwts.claims(getClaimsFromToken(token));
             claims.setIssuedAt(generateCurrentDate());
             refreshedToken = generateToken(claims);
         } catch (Exception e) {
@@ -1,9 +1,9 @@
 package com.cfgglobal.test.security.handlers;
 
 
-import com.cfgglobal.test.cache.CacheClient;
 import com.cfgglobal.test.config.app.ApplicationProperties;
 import com.cfgglobal.test.domain.User;
+import com.cfgglobal.test.security.PrincipalCache;
 import com.cfgglobal.test.security.TokenHelper;
 import com.cfgglobal.test.security.UserTokenState;
 import com.cfgglobal.test.service.UserService;
@@ -42,7 +42,7 @@ public class AuthenticationSuccessHandler extends SimpleUrlAuthenticationSuccess
     UserService userService;
 
     @Autowired
-    CacheClient cacheClient;
+    PrincipalCache principalCache;
 
     @Override
     @Transactional
@@ -52,7 +52,7 @@ public class AuthenticationSuccessHandler extends SimpleUrlAuthenticationSuccess
         User user = (User) authentication.getPrincipal();
 
         if (!"local".equals(profile)) {
-            cacheClient.set(applicationProperties.getUserClass() + "-" + user.getUsername(), userService.getUserWithPermissions(user.getUsername()));
+            principalCache.put(user.getUsername(), userService.getUserWithPermissions(user.getUsername()));
         }
 
         String jws = tokenHelper.generateToken(user.getUsername());
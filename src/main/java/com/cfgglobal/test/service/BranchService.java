@@ -1,11 +1,128 @@
 package com.cfgglobal.test.service;
 
+import com.cfgglobal.test.cache.MessageBroker;
+import com.cfgglobal.test.dao.BranchDao;
 import com.cfgglobal.test.domain.Branch;
+import com.cfgglobal.test.security.SecurityInvalidator;
 import com.cfgglobal.test.service.base.BaseService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.annotation.PostConstruct;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Keeps {@link Branch#getPath()} in line with the parent links, so that "this branch and everything below it"
+ * is a single prefix match on an indexed column.
+ * <p>
+ * The cached {@link BranchTree} is dropped on every node, through the {@link MessageBroker}, when a branch changes.
+ */
+@Slf4j
 @Service
 public class BranchService extends BaseService<Branch, Long> {
 
+    public static final String CHANNEL = "access-control:branch-changed";
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    @Autowired
+    private BranchDao branchDao;
+
+    @Autowired
+    private MessageBroker messageBroker;
+
+    private volatile BranchTree tree;
+
+    @PostConstruct
+    public void subscribe() {
+        messageBroker.subscribe(CHANNEL, this::onMessage);
+    }
+
+    public BranchTree tree() {
+        BranchTree current = tree;
+        if (current == null) {
+            current = BranchTree.of(branchDao.findParentIds());
+            tree = current;
+        }
+        return current;
+    }
+
+    /**
+     * Computes the path of a new branch and, when the parent changed, moves the paths of the whole subtree.
+     */
+    @Override
+    @Transactional
+    public <S extends Branch> S save(S branch) {
+        Branch parent = branch.getParent() == null ? null : findOne(branch.getParent().getId());
+        String oldPath = branch.getPath();
+        if (parent != null && oldPath != null && Objects.toString(parent.getPath(), "").startsWith(oldPath)) {
+            throw new IllegalArgumentException("branch " + branch.getId() + " cannot be moved below itself");
+        }
+        S saved = super.save(branch);
+        String parentPath = parent == null ? BranchTree.SEPARATOR : Objects.toString(parent.getPath(), tree().pathOf(parent.getId()));
+        String path = parentPath + saved.getId() + BranchTree.SEPARATOR;
+        if (!path.equals(oldPath)) {
+            if (oldPath != null) {
+                branchDao.movePaths(oldPath, path);
+            }
+            saved.setPath(path);
+        }
+        tree = null;
+        return saved;
+    }
+
+    @Override
+    public void delete(Long id) {
+        super.delete(id);
+        tree = null;
+    }
+
+    @Override
+    public void delete(Branch branch) {
+        super.delete(branch);
+        tree = null;
+    }
+
+    /**
+     * Fills in paths of branches created before paths were maintained, or changed outside of this service.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void rebuildPaths() {
+        BranchTree current = BranchTree.of(branchDao.findParentIds());
+        int updated = 0;
+        for (Branch branch : branchDao.findAll()) {
+            String path = current.pathOf(branch.getId());
+            if (!Objects.equals(path, branch.getPath())) {
+                branch.setPath(path);
+                updated++;
+            }
+        }
+        if (updated > 0) {
+            log.info("rebuilt the path of {} branches", updated);
+        }
+        tree = current;
+    }
+
+    /**
+     * Drops the tree on this node and, once the surrounding transaction has committed, on every node.
+     */
+    public void treeChanged() {
+        tree = null;
+        SecurityInvalidator.afterCommit(() -> {
+            tree = null;
+            messageBroker.publish(CHANNEL, nodeId);
+        });
+    }
 
+    private void onMessage(String message) {
+        if (!nodeId.equals(message)) {
+            tree = null;
+        }
+    }
 }
@@ -0,0 +1,74 @@
+package com.cfgglobal.test.service;
+
+import io.vavr.collection.List;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the branch hierarchy, built from (id, parent id) pairs.
+ */
+public final class BranchTree {
+
+    public static final String SEPARATOR = "/";
+
+    private final Map<Long, Long> parents = new HashMap<>();
+
+    private final Map<Long, java.util.List<Long>> children = new HashMap<>();
+
+    private final Map<Long, String> paths = new HashMap<>();
+
+    private BranchTree(java.util.List<Object[]> parentIds) {
+        for (Object[] row : parentIds) {
+            Long id = ((Number) row[0]).longValue();
+            Long parentId = row[1] == null ? null : ((Number) row[1]).longValue();
+            parents.put(id, parentId);
+            if (parentId != null) {
+                children.computeIfAbsent(parentId, key -> new ArrayList<>()).add(id);
+            }
+        }
+        parents.keySet().forEach(this::computePath);
+    }
+
+    public static BranchTree of(java.util.List<Object[]> parentIds) {
+        return new BranchTree(parentIds);
+    }
+
+    /**
+     * @return the materialized path of the branch, or null if it is unknown or sits in a cycle
+     */
+    public String pathOf(Long id) {
+        return paths.get(id);
+    }
+
+    public List<Long> descendantsOf(Long id) {
+        List<Long> descendants = List.empty();
+        java.util.Deque<Long> pending = new java.util.ArrayDeque<>(children.getOrDefault(id, new ArrayList<>()));
+        while (!pending.isEmpty()) {
+            Long child = pending.pop();
+            descendants = descendants.append(child);
+            pending.addAll(children.getOrDefault(child, new ArrayList<>()));
+        }
+        return descendants;
+    }
+
+    private String computePath(Long id) {
+        String path = paths.get(id);
+        if (path != null) {
+            return path;
+        }
+        StringBuilder builder = new StringBuilder(SEPARATOR);
+        java.util.List<Long> ancestors = new ArrayList<>();
+        for (Long current = id; current != null; current = parents.get(current)) {
+            if (ancestors.contains(current) || ancestors.size() > parents.size()) {
+                return null;
+            }
+            ancestors.add(0, current);
+        }
+        ancestors.forEach(ancestor -> builder.append(ancestor).append(SEPARATOR));
+        path = builder.toString();
+        paths.put(id, path);
+        return path;
+    }
+}
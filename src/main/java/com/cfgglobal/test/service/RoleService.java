@@ -5,11 +5,20 @@ import com.cfgglobal.test.domain.RolePermission;
 import com.cfgglobal.test.service.base.BaseService;
 import io.vavr.collection.List;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 
 @Service
 public class RoleService extends BaseService<Role, Long> {
 
+    /**
+     * Permissions and rules of the role, loaded so that they can be used outside of the session.
+     */
+    @Transactional
+    public java.util.List<RolePermission> findRolePermissions(Long roleId) {
+        return new java.util.ArrayList<>(findOne(roleId).getRolePermissions());
+    }
+
     public Role removeEmptyRules(Role role) {
         java.util.List<RolePermission> rolePermissions = role.getRolePermissions();
         return role.setRolePermissions(List.ofAll(rolePermissions)
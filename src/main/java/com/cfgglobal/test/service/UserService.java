@@ -12,6 +12,7 @@ import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
 import java.util.stream.Collectors;
@@ -22,6 +23,7 @@ public class UserService extends BaseService<User, Long> {
     @Autowired
     private UserDao userDao;
 
+    @Transactional
     public User getUserWithPermissions(String username) {
         User user = userDao.findByUsername(username).getOrElseThrow((() -> new AccessDeniedException("invalid user information or user is not verified: " + username)));
         java.util.List<Permission> permissions = user.getRole().getRolePermissions().stream().map(RolePermission::getPermission).collect(Collectors.toList());
@@ -0,0 +1,198 @@
+package com.cfgglobal.test.service;
+
+import com.cfgglobal.test.config.ActionReportProperties;
+import com.cfgglobal.test.domain.VisitRecord;
+import com.google.common.collect.ImmutableMap;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Writes visit records in the background, in JDBC batches of {@code visit-record-batch-size} or whatever arrived
+ * within {@code visit-record-flush-interval}.
+ * <p>
+ * {@link #offer} never blocks the request. Normal requests are sampled and may only fill the buffer up to
+ * three quarters, the rest is kept for slow and failed requests, which are never sampled out. Records that do
+ * not fit are dropped and counted.
+ */
+@Slf4j
+@Component
+@EnableConfigurationProperties(ActionReportProperties.class)
+public class VisitRecordWriter {
+
+    private static final String INSERT = "insert into visit_record (ip, uri, method, query_string, request_body, execution_time, status, creator_id, allocated_bytes, cpu_time, version) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 0)";
+
+    private final LongAdder accepted = new LongAdder();
+
+    private final LongAdder sampledOut = new LongAdder();
+
+    private final LongAdder dropped = new LongAdder();
+
+    private final LongAdder written = new LongAdder();
+
+    private final LongAdder failed = new LongAdder();
+
+    private final LongAdder flushes = new LongAdder();
+
+    private final LongAdder flushNanos = new LongAdder();
+
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+
+    private BlockingQueue<VisitRecord> queue;
+
+    private int normalCapacity;
+
+    private volatile boolean running;
+
+    private Thread writer;
+
+    @Autowired
+    private ActionReportProperties actionReportProperties;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    public void start() {
+        open();
+        running = true;
+        writer = new Thread(this::run, "visit-record-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Flushes what is still buffered before the datasource goes away.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    void open() {
+        int capacity = actionReportProperties.getVisitRecordBufferSize();
+        queue = new ArrayBlockingQueue<>(capacity);
+        normalCapacity = capacity - capacity / 4;
+    }
+
+    public boolean offer(VisitRecord record) {
+        if (!mustKeep(record)) {
+            double sampleRate = actionReportProperties.getVisitRecordSampleRate();
+            if (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+                sampledOut.increment();
+                return false;
+            }
+            if (queue.size() >= normalCapacity) {
+                dropped.increment();
+                return false;
+            }
+        }
+        if (!queue.offer(record)) {
+            dropped.increment();
+            return false;
+        }
+        accepted.increment();
+        return true;
+    }
+
+    public Map<String, Object> stats() {
+        long count = flushes.sum();
+        return ImmutableMap.<String, Object>builder()
+                .put("queueDepth", queue.size())
+                .put("queueCapacity", queue.size() + queue.remainingCapacity())
+                .put("accepted", accepted.sum())
+                .put("sampledOut", sampledOut.sum())
+                .put("dropped", dropped.sum())
+                .put("written", written.sum())
+                .put("failed", failed.sum())
+                .put("flushCount", count)
+                .put("averageFlushNanos", count == 0 ? 0 : flushNanos.sum() / count)
+                .put("maxFlushNanos", maxFlushNanos.get())
+                .build();
+    }
+
+    private boolean mustKeep(VisitRecord record) {
+        return (record.getStatus() != null && record.getStatus() >= 500)
+                || (record.getExecutionTime() != null && record.getExecutionTime() >= actionReportProperties.getVisitRecordSlowThreshold());
+    }
+
+    private void run() {
+        int batchSize = actionReportProperties.getVisitRecordBatchSize();
+        long interval = TimeUnit.MILLISECONDS.toNanos(actionReportProperties.getVisitRecordFlushInterval());
+        List<VisitRecord> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                VisitRecord first = queue.poll(interval, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + interval;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0 || !running) {
+                        break;
+                    }
+                    VisitRecord next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+                queue.drainTo(batch);
+            }
+            flush(batch);
+            batch.clear();
+        }
+    }
+
+    void flush(List<VisitRecord> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            jdbcTemplate.batchUpdate(INSERT, batch, batch.size(), (ps, record) -> {
+                ps.setString(1, record.getIp());
+                ps.setString(2, record.getUri());
+                ps.setString(3, record.getMethod());
+                ps.setString(4, StringUtils.left(record.getQueryString(), 1024));
+                ps.setString(5, StringUtils.left(record.getRequestBody(), 2048));
+                ps.setObject(6, record.getExecutionTime(), Types.BIGINT);
+                ps.setObject(7, record.getStatus(), Types.INTEGER);
+                ps.setObject(8, record.getCreator() == null ? null : record.getCreator().getId(), Types.BIGINT);
+                ps.setObject(9, record.getAllocatedBytes(), Types.BIGINT);
+                ps.setObject(10, record.getCpuTime(), Types.BIGINT);
+            });
+            written.add(batch.size());
+        } catch (Exception e) {
+            log.error("cannot write {} visit records, {}", batch.size(), e.getMessage());
+            failed.add(batch.size());
+        }
+        long elapsed = System.nanoTime() - start;
+        flushes.increment();
+        flushNanos.add(elapsed);
+        maxFlushNanos.accumulateAndGet(elapsed, Math::max);
+    }
+}
@@ -0,0 +1,278 @@
+package com.cfgglobal.test.service;
+
+import com.cfgglobal.test.config.ActionReportProperties;
+import com.cfgglobal.test.domain.VisitRecord;
+import com.cfgglobal.test.domain.VisitRollup;
+import com.cfgglobal.test.enums.RollupPeriod;
+import io.vavr.Tuple;
+import io.vavr.Tuple2;
+import io.vavr.Tuple5;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.NonTransientDataAccessException;
+import org.springframework.http.HttpMethod;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Counts every request, sampled out or not, into per minute {@link VisitRollup}s of uri template, method, user
+ * and ip. Ended minutes are added to their minute and hour rows, so several nodes can write the same rows.
+ * <p>
+ * Also purges raw visit records and rollups older than their retention.
+ */
+@Slf4j
+@Component
+@EnableConfigurationProperties(ActionReportProperties.class)
+public class VisitRollupAggregator {
+
+    /**
+     * Adds to the row when it exists, a row another node inserts meanwhile is added to, never counted twice.
+     */
+    private static final String UPSERT = "insert into visit_rollup (period, period_start, uri_template, method, user_id, ip, request_count, error_count, "
+            + "latency_sum, latency_max, le10, le50, le100, le250, le500, le1000, le5000, le_inf, version) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 0) "
+            + "on duplicate key update request_count = request_count + values(request_count), error_count = error_count + values(error_count), "
+            + "latency_sum = latency_sum + values(latency_sum), latency_max = greatest(latency_max, values(latency_max)), "
+            + "le10 = le10 + values(le10), le50 = le50 + values(le50), le100 = le100 + values(le100), le250 = le250 + values(le250), "
+            + "le500 = le500 + values(le500), le1000 = le1000 + values(le1000), le5000 = le5000 + values(le5000), le_inf = le_inf + values(le_inf)";
+
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    /**
+     * A minute is written this long after it ended, requests that started counting into it have finished by then.
+     */
+    private static final long GRACE = TimeUnit.SECONDS.toMillis(5);
+
+    private static final int PURGE_CHUNK = 10000;
+
+    /**
+     * Method of requests with a method outside the standard ones, which Tomcat accepts as any token.
+     */
+    static final String OTHER_METHOD = "OTHER";
+
+    private static final Pattern NUMERIC_SEGMENT = Pattern.compile("/\\d+(?=/|$)");
+
+    private final ConcurrentMap<Tuple5<Long, String, String, Long, String>, Counts> minutes = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "visit-rollup");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final LongSupplier clock;
+
+    @Autowired
+    private ActionReportProperties actionReportProperties;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    public VisitRollupAggregator() {
+        this(System::currentTimeMillis);
+    }
+
+    VisitRollupAggregator(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Nothing is written or purged unless visit recording is on, the tables may not even exist otherwise.
+     */
+    @PostConstruct
+    public void start() {
+        if (!actionReportProperties.isVisitRecord()) {
+            return;
+        }
+        scheduler.scheduleWithFixedDelay(() -> flush(clock.getAsLong()), 15, 15, TimeUnit.SECONDS);
+        scheduler.scheduleWithFixedDelay(() -> purge(clock.getAsLong()), 1, 60, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        flush(Long.MAX_VALUE);
+    }
+
+    /**
+     * @param pattern the mapping that handled the request, numeric path segments of the uri are collapsed without one
+     */
+    public void record(VisitRecord record, String pattern, long latencyMillis) {
+        String uriTemplate = pattern != null ? pattern : uriTemplate(record.getUri());
+        Long userId = record.getCreator() == null ? 0L : record.getCreator().getId();
+        long minute = clock.getAsLong() / MINUTE * MINUTE;
+        String method = HttpMethod.resolve(record.getMethod()) == null ? OTHER_METHOD : record.getMethod();
+        minutes.computeIfAbsent(Tuple.of(minute, StringUtils.left(uriTemplate, 255), method, userId, StringUtils.left(StringUtils.defaultString(record.getIp()), 64)), key -> new Counts())
+                .add(latencyMillis, record.getStatus() != null && record.getStatus() >= 500);
+    }
+
+    /**
+     * Route of a uri without the handler mapping at hand, numeric path segments collapsed to {@code /{id}}.
+     */
+    public static String uriTemplate(String uri) {
+        return NUMERIC_SEGMENT.matcher(uri).replaceAll("/{id}");
+    }
+
+    /**
+     * Writes the minutes that ended before {@code now}; on failure they are kept for the next attempt. When the
+     * data itself is refused, a retry would fail the same way, the rows are written one by one and those refused
+     * are dropped.
+     */
+    void flush(long now) {
+        Map<Tuple5<Long, String, String, Long, String>, Counts> ended = new HashMap<>();
+        for (Iterator<Map.Entry<Tuple5<Long, String, String, Long, String>, Counts>> it = minutes.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Tuple5<Long, String, String, Long, String>, Counts> entry = it.next();
+            if (entry.getKey()._1 + MINUTE + GRACE <= now) {
+                ended.put(entry.getKey(), entry.getValue());
+                it.remove();
+            }
+        }
+        if (ended.isEmpty()) {
+            return;
+        }
+        Map<Tuple5<Long, String, String, Long, String>, Counts> hours = new HashMap<>();
+        ended.forEach((key, counts) -> hours.computeIfAbsent(key.update1(key._1 / HOUR * HOUR), k -> new Counts()).addAll(counts));
+        List<Tuple2<Object[], Object[]>> rows = new ArrayList<>(ended.size() + hours.size());
+        ended.forEach((key, counts) -> rows.add(Tuple.of(key(RollupPeriod.MINUTE, key), counts.values())));
+        hours.forEach((key, counts) -> rows.add(Tuple.of(key(RollupPeriod.HOUR, key), counts.values())));
+        try {
+            writeInTransaction(rows);
+        } catch (NonTransientDataAccessException e) {
+            int dropped = 0;
+            for (Tuple2<Object[], Object[]> row : rows) {
+                try {
+                    writeInTransaction(Collections.singletonList(row));
+                } catch (DataAccessException rowFailure) {
+                    log.debug("dropped visit rollup {}, {}", Arrays.toString(row._1), rowFailure.getMessage());
+                    dropped++;
+                }
+            }
+            log.error("dropped {} of {} visit rollups, {}", dropped, rows.size(), e.getMessage());
+        } catch (Exception e) {
+            log.error("cannot write {} visit rollups, {}", rows.size(), e.getMessage());
+            ended.forEach((key, counts) -> minutes.merge(key, counts, Counts::addAll));
+        }
+    }
+
+    private void writeInTransaction(List<Tuple2<Object[], Object[]>> rows) {
+        new TransactionTemplate(transactionManager).execute(status -> {
+            write(rows);
+            return null;
+        });
+    }
+
+    private void write(List<Tuple2<Object[], Object[]>> rows) {
+        jdbcTemplate.batchUpdate(UPSERT, rows.stream().map(row -> ArrayUtils.addAll(row._1, row._2)).collect(Collectors.toList()));
+    }
+
+    private static Object[] key(RollupPeriod period, Tuple5<Long, String, String, Long, String> key) {
+        return new Object[]{period.name(), new Timestamp(key._1), key._2, key._3, key._4, key._5};
+    }
+
+    /**
+     * Deletes in chunks to keep locks short, a retention of 0 days keeps everything.
+     */
+    void purge(long now) {
+        try {
+            purge("delete from visit_record where created_at < ?", now, actionReportProperties.getVisitRecordRetention());
+            purge("delete from visit_rollup where period = 'MINUTE' and period_start < ?", now, actionReportProperties.getVisitRollupMinuteRetention());
+            purge("delete from visit_rollup where period = 'HOUR' and period_start < ?", now, actionReportProperties.getVisitRollupHourRetention());
+        } catch (Exception e) {
+            log.error("cannot purge visit records, {}", e.getMessage());
+        }
+    }
+
+    private void purge(String sql, long now, int retentionDays) {
+        if (retentionDays <= 0) {
+            return;
+        }
+        Timestamp before = new Timestamp(now - TimeUnit.DAYS.toMillis(retentionDays));
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(sql + " limit " + PURGE_CHUNK, before);
+        } while (deleted == PURGE_CHUNK);
+    }
+
+    private static final class Counts {
+
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder errors = new LongAdder();
+
+        private final LongAdder latencySum = new LongAdder();
+
+        private final AtomicLong latencyMax = new AtomicLong();
+
+        private final AtomicLongArray buckets = new AtomicLongArray(VisitRollup.LATENCY_BOUNDS.length + 1);
+
+        void add(long latency, boolean error) {
+            count.increment();
+            if (error) {
+                errors.increment();
+            }
+            latencySum.add(latency);
+            latencyMax.accumulateAndGet(latency, Math::max);
+            int bucket = 0;
+            while (bucket < VisitRollup.LATENCY_BOUNDS.length && latency > VisitRollup.LATENCY_BOUNDS[bucket]) {
+                bucket++;
+            }
+            buckets.incrementAndGet(bucket);
+        }
+
+        Counts addAll(Counts other) {
+            count.add(other.count.sum());
+            errors.add(other.errors.sum());
+            latencySum.add(other.latencySum.sum());
+            latencyMax.accumulateAndGet(other.latencyMax.get(), Math::max);
+            for (int i = 0; i < buckets.length(); i++) {
+                buckets.addAndGet(i, other.buckets.get(i));
+            }
+            return this;
+        }
+
+        Object[] values() {
+            Object[] values = new Object[4 + buckets.length()];
+            values[0] = count.sum();
+            values[1] = errors.sum();
+            values[2] = latencySum.sum();
+            values[3] = latencyMax.get();
+            for (int i = 0; i < buckets.length(); i++) {
+                values[4 + i] = buckets.get(i);
+            }
+            return values;
+        }
+    }
+}
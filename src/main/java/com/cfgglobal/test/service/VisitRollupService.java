@@ -0,0 +1,14 @@
+package com.cfgglobal.test.service;
+
+import com.cfgglobal.test.dao.VisitRollupDao;
+import com.cfgglobal.test.domain.VisitRollup;
+import com.cfgglobal.test.service.base.BaseService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+@Service
+public class VisitRollupService extends BaseService<VisitRollup, Long> {
+
+    @Autowired
+    private VisitRollupDao visitRollupDao;
+}
@@ -77,29 +77,21 @@ public abstract class BaseService<T, ID extends Serializable> {
 
     public T findOneBySecurity(ID id, String method, String requestURI) {
         List<Filter> securityFilters = securityFilter.query(method, requestURI);
-        List<T> list = baseDao.findByFilter(securityFilters);
-        T entity = baseDao.findById(id).get();
-        if (list.contains(entity)) {
-            return entity;
-        } else {
-            throw new AccessDeniedException(requestURI);
-        }
+        return baseDao.findOneByFilter(id, securityFilters)
+                .orElseThrow(() -> new AccessDeniedException(requestURI));
     }
 
     public void deleteBySecurity(ID id, String method, String requestURI) {
         List<Filter> securityFilters = securityFilter.query(method, requestURI);
-        List<T> list = baseDao.findByFilter(securityFilters);
-        T entity = baseDao.findById(id).get();
-        if (list.contains(entity)) {
-            baseDao.delete(entity);
-        } else {
-            throw new AccessDeniedException(requestURI);
-        }
+        T entity = baseDao.findOneByFilter(id, securityFilters)
+                .orElseThrow(() -> new AccessDeniedException(requestURI));
+        baseDao.delete(entity);
     }
 
+    @SuppressWarnings("unchecked")
     public <S extends T> S saveBySecurity(S entity, String method, String requestURI) {
         Object id = Reflect.on(entity).get("id");
-        if (id == null || baseDao.findByFilter(securityFilter.query(method, requestURI)).contains(entity)) {
+        if (id == null || baseDao.existsByFilter((ID) id, securityFilter.query(method, requestURI))) {
             return save(entity);
         }
         throw new AccessDeniedException(requestURI);
@@ -0,0 +1,47 @@
+package com.cfgglobal.test.service.rule;
+
+import com.cfgglobal.test.domain.Permission;
+import com.cfgglobal.test.domain.RolePermission;
+import com.cfgglobal.test.domain.Rule;
+import com.cfgglobal.test.security.PermissionRouteIndex;
+import com.cfgglobal.test.service.rule.access.AccessRule;
+import io.vavr.collection.List;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Compiled security plan of one version of a role: its permissions indexed by route, and for each permission
+ * the {@link AccessRule}s to apply, in the order of the role's rules. Rules are resolved on first use, so that
+ * an unknown rule only fails the routes that use it.
+ */
+class RolePlan {
+
+    private final PermissionRouteIndex routes;
+
+    private final Map<Long, RolePermission> rolePermissions = new HashMap<>();
+
+    private final ConcurrentMap<Long, List<AccessRule>> accessRules = new ConcurrentHashMap<>();
+
+    RolePlan(java.util.List<RolePermission> rolePermissions) {
+        List<RolePermission> granted = List.ofAll(rolePermissions).filter(rp -> rp.getPermission() != null);
+        for (RolePermission rolePermission : granted) {
+            this.rolePermissions.putIfAbsent(rolePermission.getPermission().getId(), rolePermission);
+        }
+        this.routes = PermissionRouteIndex.of(granted.map(RolePermission::getPermission).asJava());
+    }
+
+    Permission route(String method, String requestURI) {
+        return routes.find(method, requestURI);
+    }
+
+    List<AccessRule> accessRules(Permission permission, RuleService ruleService) {
+        return accessRules.computeIfAbsent(permission.getId(), id -> {
+            java.util.List<Rule> rules = rolePermissions.get(id).getRules();
+            return List.ofAll(rules == null ? java.util.Collections.emptyList() : rules)
+                    .map(rule -> ruleService.findAccessRules(rule.getName()));
+        });
+    }
+}
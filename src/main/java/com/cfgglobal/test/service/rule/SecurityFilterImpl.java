@@ -2,23 +2,41 @@ package com.cfgglobal.test.service.rule;
 
 import com.cfgglobal.test.base.Filter;
 import com.cfgglobal.test.domain.*;
+import com.cfgglobal.test.security.SecurityChangedEvent;
+import com.cfgglobal.test.service.RoleService;
+import com.cfgglobal.test.service.rule.access.AccessRule;
+import io.vavr.Tuple;
+import io.vavr.Tuple2;
 import io.vavr.collection.List;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
 import java.text.MessageFormat;
-import java.util.regex.Pattern;
-import java.util.stream.Stream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Component
 public class SecurityFilterImpl implements SecurityFilter {
 
+    private static final String REQUEST_FILTERS = SecurityFilterImpl.class.getName() + ".FILTERS";
 
     @Autowired
     private RuleService ruleService;
 
+    @Autowired
+    private RoleService roleService;
+
+    /**
+     * Keyed by role id and version. Cached principals only carry the role id and version.
+     */
+    private final Map<Tuple2<Long, Long>, RolePlan> plans = new ConcurrentHashMap<>();
+
     @Override
     public User currentUser() {
         return (User) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
@@ -27,19 +45,38 @@ public class SecurityFilterImpl implements SecurityFilter {
 
     @Override
     public List<Filter> query(String method, String requestURI) {
-        User user = currentUser();
-        Role role = user.getRole();
-        java.util.List<RolePermission> rolePermissions = role.getRolePermissions();
+        Role role = currentUser().getRole();
+        RolePlan plan = plans.computeIfAbsent(Tuple.of(role.getId(), role.getVersion()),
+                key -> new RolePlan(roleService.findRolePermissions(key._1)));
 
-        List<Permission> permissions = List.ofAll(rolePermissions).map(RolePermission::getPermission);
-        Permission permission = permissions
-                .filter(resource -> Stream.of(resource.getAuthUris().split(";"))
-                        .anyMatch(uriPatten -> Pattern.matches(uriPatten, requestURI)))
-                .headOption()
-                .getOrElseThrow(() -> new AccessDeniedException(MessageFormat.format("No permission {0} {1}", method, requestURI)));
+        Permission permission = plan.route(method, requestURI);
+        if (permission == null) {
+            throw new AccessDeniedException(MessageFormat.format("No permission {0} {1}", method, requestURI));
+        }
+        Map<Tuple2<AccessRule, Long>, Filter> filters = requestFilters();
+        return plan.accessRules(permission, ruleService)
+                .map(accessRule -> filters.computeIfAbsent(Tuple.of(accessRule, permission.getId()), key -> accessRule.exec(permission)));
+    }
 
-        java.util.List<Rule> rules = List.ofAll(rolePermissions).filter(rp -> rp.getPermission().getId().equals(permission.getId())).head().getRules();
-        return List.ofAll(rules).map(rule -> ruleService.findAccessRules(rule.getName()).exec(permission));
+    @EventListener
+    public void onSecurityChanged(SecurityChangedEvent event) {
+        plans.clear();
+    }
 
+    /**
+     * Filters already computed during the current request, they only depend on the user and the permission.
+     */
+    @SuppressWarnings("unchecked")
+    private Map<Tuple2<AccessRule, Long>, Filter> requestFilters() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return new HashMap<>();
+        }
+        Map<Tuple2<AccessRule, Long>, Filter> filters = (Map<Tuple2<AccessRule, Long>, Filter>) attributes.getAttribute(REQUEST_FILTERS, RequestAttributes.SCOPE_REQUEST);
+        if (filters == null) {
+            filters = new HashMap<>();
+            attributes.setAttribute(REQUEST_FILTERS, filters, RequestAttributes.SCOPE_REQUEST);
+        }
+        return filters;
     }
 }
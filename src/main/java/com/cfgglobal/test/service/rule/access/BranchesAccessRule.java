@@ -2,10 +2,9 @@ package com.cfgglobal.test.service.rule.access;
 
 
 import com.cfgglobal.test.base.Filter;
-import com.cfgglobal.test.dao.BranchDao;
 import com.cfgglobal.test.domain.Permission;
 import com.cfgglobal.test.domain.User;
-import io.vavr.collection.List;
+import com.cfgglobal.test.service.BranchService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -13,16 +12,22 @@ import org.springframework.stereotype.Component;
 @Component
 public class BranchesAccessRule extends AbstractAccessRule {
     @Autowired
-    private BranchDao branchDao;
+    private BranchService branchService;
 
+    /**
+     * The user's branch and all of its descendants, as a prefix match on the creator's branch path.
+     */
     @Override
     public Filter exec(Permission permission) {
         User user = securityFilter.currentUser();
         Filter orgFilter = new Filter();
         Long orgId = user.getBranch().getId();
-        List<Long> ids = branchDao.findSubOrgIds(user.getBranch().getId());
-        ids = ids.append(orgId);
-        orgFilter.addCondition("creator.branch.id", ids.toJavaArray(), Filter.OPERATOR_IN);
+        String path = branchService.tree().pathOf(orgId);
+        if (path == null) {
+            orgFilter.addCondition("creator.branch.id", orgId, Filter.OPERATOR_EQ);
+        } else {
+            orgFilter.addCondition("creator.branch.path", path, Filter.OPERATOR_STARTS_WITH);
+        }
         return orgFilter;
     }
 
@@ -0,0 +1,81 @@
+package com.cfgglobal.test.web.api;
+
+import com.cfgglobal.test.base.ApiResp;
+import com.cfgglobal.test.metrics.FlightRecorder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Flight recordings of this node, e.g. {@code POST /sys/profile?settings=profile&duration=60}, then
+ * {@code GET /sys/profile/{name}/summary} or {@code GET /sys/profile/{name}} for the file to open in Mission Control.
+ * <p>
+ * Unlike the rest of {@code /sys}, needs an authenticated user.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/sys/profile")
+public class ProfileController {
+
+    @Autowired
+    private FlightRecorder flightRecorder;
+
+    @GetMapping
+    public ResponseEntity<List<Map<String, Object>>> index() throws IOException {
+        return ResponseEntity.ok(flightRecorder.list());
+    }
+
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> start(@RequestParam(defaultValue = "profile") String settings,
+                                                     @RequestParam(defaultValue = "60") int duration) throws IOException {
+        return ResponseEntity.ok(flightRecorder.start(settings, duration));
+    }
+
+    @PostMapping("/stop")
+    public ResponseEntity<Map<String, Object>> stop() {
+        return ResponseEntity.ok(flightRecorder.stop());
+    }
+
+    @GetMapping("/{name}")
+    public void download(@PathVariable String name, HttpServletResponse response) throws IOException {
+        File file = flightRecorder.file(name);
+        if (file == null) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        response.setContentType("application/octet-stream");
+        response.setHeader("Content-Disposition", "attachment; filename=" + file.getName());
+        response.setContentLengthLong(file.length());
+        Files.copy(file.toPath(), response.getOutputStream());
+        response.flushBuffer();
+    }
+
+    @GetMapping("/{name}/summary")
+    public ResponseEntity<Map<String, Object>> summary(@PathVariable String name, @RequestParam(defaultValue = "20") int top) throws IOException {
+        File file = flightRecorder.file(name);
+        if (file == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(flightRecorder.summary(file, top));
+    }
+
+    @ExceptionHandler(IllegalStateException.class)
+    public ResponseEntity<ApiResp> conflict(IllegalStateException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(new ApiResp().setError(e.getMessage()));
+    }
+}
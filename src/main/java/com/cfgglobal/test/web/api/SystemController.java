@@ -7,9 +7,17 @@ import com.cfgglobal.test.dao.RoleDao;
 import com.cfgglobal.test.domain.BaseEntity;
 import com.cfgglobal.test.domain.Permission;
 import com.cfgglobal.test.domain.Role;
+import com.cfgglobal.test.metrics.LatencyRegistry;
+import com.cfgglobal.test.metrics.ThreadResourceMeter;
+import com.cfgglobal.test.security.AdmissionFilter;
+import com.cfgglobal.test.security.PrincipalCache;
+import com.cfgglobal.test.security.TokenHelper;
 import com.cfgglobal.test.service.GeneratorService;
 import com.cfgglobal.test.service.PermissionService;
 import com.cfgglobal.test.service.RoleService;
+import com.cfgglobal.test.service.VisitRecordWriter;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import io.vavr.collection.List;
 import lombok.AccessLevel;
@@ -20,10 +28,15 @@ import org.springframework.boot.context.properties.EnableConfigurationProperties
 import org.springframework.http.ResponseEntity;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Map;
 import java.util.function.Consumer;
 
 @FieldDefaults(level = AccessLevel.PRIVATE)
@@ -44,6 +57,18 @@ public class SystemController {
     PermissionDao permissionDao;
     @Autowired
     RoleDao roleDao;
+    @Autowired
+    TokenHelper tokenHelper;
+    @Autowired
+    PrincipalCache principalCache;
+    @Autowired
+    VisitRecordWriter visitRecordWriter;
+    @Autowired
+    LatencyRegistry latencyRegistry;
+    @Autowired
+    ThreadResourceMeter threadResourceMeter;
+    @Autowired
+    AdmissionFilter admissionFilter;
 
 
     @GetMapping("/entity")
@@ -94,4 +119,58 @@ public class SystemController {
         //SharedConfig.CLEAN_ROLE.end();
         return ResponseEntity.ok(role);
     }
+
+    @GetMapping("/cache")
+    public ResponseEntity<Map<String, Map<String, Object>>> cache() {
+        return ResponseEntity.ok(ImmutableMap.of(
+                "jwtClaims", toMap(tokenHelper.claimsCacheStats()),
+                "principalLocal", toMap(principalCache.localStats()),
+                "principalRemote", toMap(principalCache.remoteStats())));
+    }
+
+    @GetMapping("/visit-record")
+    public ResponseEntity<Map<String, Object>> visitRecord() {
+        return ResponseEntity.ok(visitRecordWriter.stats());
+    }
+
+    @GetMapping("/admission")
+    public ResponseEntity<Map<String, Map<String, Object>>> admission() {
+        return ResponseEntity.ok(admissionFilter.stats());
+    }
+
+    @GetMapping("/metrics")
+    public ResponseEntity<Map<String, Map<String, Map<String, Object>>>> metrics() {
+        return ResponseEntity.ok(latencyRegistry.snapshot());
+    }
+
+    @GetMapping("/metrics/prometheus")
+    public void prometheus(HttpServletResponse response) throws IOException {
+        response.setContentType("text/plain; version=0.0.4; charset=utf-8");
+        response.getWriter().write(latencyRegistry.prometheus());
+    }
+
+    @GetMapping("/metrics/resources")
+    public ResponseEntity<Map<String, Boolean>> resources() {
+        return ResponseEntity.ok(ImmutableMap.of(
+                "supported", threadResourceMeter.isSupported(),
+                "enabled", threadResourceMeter.isEnabled()));
+    }
+
+    /**
+     * Switches the allocation and cpu accounting of requests, e.g. {@code POST /sys/metrics/resources?enabled=true}.
+     */
+    @PostMapping("/metrics/resources")
+    public ResponseEntity<Map<String, Boolean>> resources(@RequestParam boolean enabled) {
+        threadResourceMeter.setEnabled(enabled);
+        return resources();
+    }
+
+    private static Map<String, Object> toMap(CacheStats stats) {
+        return ImmutableMap.of(
+                "hitCount", stats.hitCount(),
+                "missCount", stats.missCount(),
+                "hitRate", stats.hitRate(),
+                "evictionCount", stats.evictionCount(),
+                "averageLoadNanos", stats.averageLoadPenalty());
+    }
 }
@@ -0,0 +1,34 @@
+package com.cfgglobal.test.web.api;
+
+import com.cfgglobal.test.domain.VisitRollup;
+import com.cfgglobal.test.service.VisitRollupService;
+import com.cfgglobal.test.web.base.BaseController;
+import io.vavr.collection.HashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Usage per minute or hour, filter with the usual request parameters, e.g. {@code f_period=HOUR&f_uriTemplate=/v1/role}.
+ */
+@Slf4j
+@RestController
+@RequestMapping(value = "/v1/visit-rollup")
+public class VisitRollupController extends BaseController {
+
+    @Autowired
+    private VisitRollupService visitRollupService;
+
+    @GetMapping
+    public ResponseEntity<Page<VisitRollup>> index(Pageable pageable, HttpServletRequest request) {
+        HashMap<String, String[]> params = HashMap.ofAll(request.getParameterMap());
+        return ResponseEntity.ok(visitRollupService.findByRequestParameters(params, pageable));
+    }
+}
@@ -1,6 +1,7 @@
 package com.cfgglobal.test.web.interceptors;
 
 import com.cfgglobal.test.config.ActionReportProperties;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
@@ -9,11 +10,13 @@ import org.springframework.web.method.HandlerMethod;
 import org.springframework.web.servlet.HandlerInterceptor;
 import org.springframework.web.servlet.ModelAndView;
 
+import javax.annotation.PreDestroy;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.File;
 import java.io.IOException;
 import java.io.Writer;
+import java.lang.reflect.Method;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
@@ -23,13 +26,31 @@ import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.List;
-
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prints the handling controller and line of every request. Line numbers are looked up once per handler method,
+ * reports are written by a background thread and dropped when it falls behind.
+ */
+@Slf4j
 @Component
 @EnableConfigurationProperties(ActionReportProperties.class)
 public class ActionReportInterceptor implements HandlerInterceptor {
 
     private static final ThreadLocal<SimpleDateFormat> sdf = ThreadLocal.withInitial(() -> new SimpleDateFormat("yyyy-MM-dd HH:mm:ss"));
+    private static final int QUEUE_SIZE = 1024;
     private static Writer writer = new SystemOutWriter();
+    private final ConcurrentMap<Method, Integer> lineNumbers = new ConcurrentHashMap<>();
+    private final ExecutorService output = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(QUEUE_SIZE), r -> {
+        Thread thread = new Thread(r, "action-report");
+        thread.setDaemon(true);
+        return thread;
+    }, new ThreadPoolExecutor.DiscardPolicy());
     @Autowired
     private ActionReportProperties actionReportProperties;
 
@@ -68,6 +89,23 @@ public class ActionReportInterceptor implements HandlerInterceptor {
         return lineNum;
     }
 
+    private int lineNum(HandlerMethod handlerMethod) {
+        Integer lineNum = lineNumbers.get(handlerMethod.getMethod());
+        if (lineNum == null) {
+            String str = handlerMethod.getReturnType().getMethod().toGenericString();
+            String[] arr = str.split(" ");
+            String search = arr[0] + StringUtils.substringAfterLast(arr[1], ".") + handlerMethod.getMethod().getName();
+            lineNum = lineNum(search, fileName(handlerMethod.getBeanType()));
+            lineNumbers.put(handlerMethod.getMethod(), lineNum);
+        }
+        return lineNum;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        output.shutdown();
+    }
+
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object o) throws Exception {
         if (!actionReportProperties.isSwitcher()) {
             return true;
@@ -88,13 +126,10 @@ public class ActionReportInterceptor implements HandlerInterceptor {
 
     public final void report(HttpServletRequest request, HandlerMethod handlerMethod) {
         StringBuilder sb = new StringBuilder("\nSpring MVC controller report -------- ").append(sdf.get().format(new Date())).append(" ------------------------------\n");
-        String str = handlerMethod.getReturnType().getMethod().toGenericString();
-        String[] arr = str.split(" ");
-        String search = arr[0] + StringUtils.substringAfterLast(arr[1], ".") + handlerMethod.getMethod().getName();
         Class cc = handlerMethod.getBeanType();
         sb.append("URL         :").append(request.getRequestURI()).append("\n");
         sb.append("Controller  : ").append(cc.getName()).append(".(").append(cc.getSimpleName()).append(".java:")
-                .append(lineNum(search, fileName(cc))).append(")");
+                .append(lineNum(handlerMethod)).append(")");
         sb.append("\nMethod      : ").append(handlerMethod.getMethod().getName()).append("\n");
         Enumeration<String> e = request.getParameterNames();
         if (e.hasMoreElements()) {
@@ -125,11 +160,14 @@ public class ActionReportInterceptor implements HandlerInterceptor {
         }
         sb.append("--------------------------------------------------------------------------------\n");
 
-        try {
-            writer.write(sb.toString());
-        } catch (IOException ex) {
-            throw new RuntimeException(ex);
-        }
+        String report = sb.toString();
+        output.execute(() -> {
+            try {
+                writer.write(report);
+            } catch (IOException ex) {
+                log.error("cannot write action report, {}", ex.getMessage());
+            }
+        });
     }
 
     private static class SystemOutWriter extends Writer {
@@ -1,9 +1,11 @@
 package com.cfgglobal.test.web.interceptors;
 
 
+import com.cfgglobal.test.config.json.EndpointRegistry;
 import com.cfgglobal.test.config.json.JsonConfig;
 import io.vavr.control.Option;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.HandlerInterceptor;
 import org.springframework.web.servlet.ModelAndView;
@@ -15,13 +17,15 @@ import javax.servlet.http.HttpServletResponse;
 @Component
 public class JsonRenderInterceptor implements HandlerInterceptor {
 
+    @Autowired
+    private EndpointRegistry endpointRegistry;
 
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
         String uri = request.getRequestURI();
         String embedded = request.getParameter("embedded");
         String fields = request.getParameter("fields");
-        Option<JsonConfig> jsonConfig = JsonConfig.create(uri, fields, embedded);
+        Option<JsonConfig> jsonConfig = endpointRegistry.jsonConfig(uri, fields, embedded);
         if (jsonConfig.isDefined()) {
             log.debug("Json Config " + jsonConfig.get().getList());
             jsonConfig.get().end();
@@ -0,0 +1,50 @@
+package com.cfgglobal.test.web.interceptors;
+
+import com.cfgglobal.test.metrics.LatencyRegistry;
+import com.cfgglobal.test.metrics.LatencyRegistry.Stage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.ModelAndView;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Times the handler, without the json serialization of its result.
+ */
+@Component
+public class LatencyInterceptor implements HandlerInterceptor {
+
+    /**
+     * Nanoseconds the JsonReturnHandler spent on the response.
+     */
+    public static final String SERIALIZATION_NANOS = LatencyInterceptor.class.getName() + ".SERIALIZATION_NANOS";
+
+    private static final String START = LatencyInterceptor.class.getName() + ".START";
+
+    @Autowired
+    private LatencyRegistry latencyRegistry;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        request.setAttribute(START, System.nanoTime());
+        return true;
+    }
+
+    @Override
+    public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler, ModelAndView modelAndView) throws Exception {
+
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) throws Exception {
+        Object start = request.getAttribute(START);
+        if (start == null) {
+            return;
+        }
+        Object serialization = request.getAttribute(SERIALIZATION_NANOS);
+        long elapsed = System.nanoTime() - (Long) start - (serialization == null ? 0 : (Long) serialization);
+        latencyRegistry.recordStage(Stage.HANDLER, elapsed);
+    }
+}
@@ -0,0 +1,71 @@
+package com.cfgglobal.test.replay;
+
+import com.cfgglobal.test.metrics.LatencyHistogram;
+import com.cfgglobal.test.service.VisitRollupAggregator;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies and failures of replayed requests by method and route, routes grouped as in the visit rollups.
+ */
+class ReplayReport {
+
+    private static final String FORMAT = "%-60s %8s %9s %9s %9s %9s %9s %7s %7s%n";
+
+    private final ConcurrentMap<String, Route> routes = new ConcurrentHashMap<>();
+
+    private final Route total = new Route();
+
+    /**
+     * @param status 0 if the request could not be sent or answered
+     */
+    void record(String method, String uri, long nanos, int status) {
+        routes.computeIfAbsent(VisitRollupAggregator.uriTemplate(uri) + " " + method, key -> new Route()).record(nanos, status);
+        total.record(nanos, status);
+    }
+
+    void print(PrintStream out, long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        out.printf(FORMAT, "route", "count", "req/s", "p50 ms", "p90 ms", "p99 ms", "max ms", "5xx", "failed");
+        new TreeMap<>(routes).forEach((name, route) -> route.print(out, name, seconds));
+        total.print(out, "total", seconds);
+    }
+
+    private static final class Route {
+
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        private final LongAdder serverErrors = new LongAdder();
+
+        private final LongAdder failed = new LongAdder();
+
+        void record(long nanos, int status) {
+            latency.record(nanos);
+            if (status == 0) {
+                failed.increment();
+            } else if (status >= 500) {
+                serverErrors.increment();
+            }
+        }
+
+        void print(PrintStream out, String name, double seconds) {
+            out.printf(FORMAT, name, latency.count(),
+                    String.format("%.1f", latency.count() / seconds),
+                    millis(latency.percentile(0.5)),
+                    millis(latency.percentile(0.9)),
+                    millis(latency.percentile(0.99)),
+                    millis(latency.max()),
+                    serverErrors.sum(),
+                    failed.sum());
+        }
+
+        private static String millis(long nanos) {
+            return String.format("%.1f", nanos / 1e6);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.cfgglobal.test.replay;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a slice of {@code visit_record} against a running instance, keeping the gaps between the recorded
+ * requests divided by the speed up factor, and prints throughput and latency percentiles per route.
+ * <p>
+ * Latency counts from when a request was due, not from when a worker got to send it, so an instance that falls
+ * behind shows up in the percentiles instead of slowing the replay down. Only GET requests are replayed unless
+ * {@code --methods} says otherwise, request bodies are replayed as recorded and may have been cut off.
+ * <pre>
+ * gradle replay -Preplay.args="--jdbc-url=jdbc:mysql://db/app --user=app --password=secret
+ *     --from=2017-11-20T09:00 --to=2017-11-20T10:00 --target=http://localhost:8080 --token=... --concurrency=32 --speed=4"
+ * </pre>
+ */
+public class TrafficReplay {
+
+    private static final String SELECT = "select created_at, method, uri, query_string, request_body from visit_record "
+            + "where created_at >= ? and created_at < ? order by created_at, id limit ?";
+
+    private final Map<String, String> options;
+
+    private final ReplayReport report = new ReplayReport();
+
+    TrafficReplay(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        options.put("target", "http://localhost:8080");
+        options.put("user", "root");
+        options.put("password", "");
+        options.put("limit", "100000");
+        options.put("concurrency", "16");
+        options.put("speed", "1");
+        options.put("methods", "GET");
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("expected --name=value, got " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        if (!options.containsKey("jdbc-url") || !options.containsKey("from")) {
+            throw new IllegalArgumentException("--jdbc-url and --from are required");
+        }
+        new TrafficReplay(options).run();
+    }
+
+    void run() throws InterruptedException {
+        List<Visit> visits = load();
+        if (visits.isEmpty()) {
+            System.out.println("no visit records between " + options.get("from") + " and " + to());
+            return;
+        }
+        int concurrency = Integer.parseInt(options.get("concurrency"));
+        double speed = Double.parseDouble(options.get("speed"));
+        System.setProperty("http.maxConnections", String.valueOf(concurrency));
+        System.out.printf("replaying %d requests against %s, concurrency %d, speed x%s%n", visits.size(), options.get("target"), concurrency, speed);
+
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        long first = visits.get(0).createdAt;
+        long start = System.nanoTime();
+        for (Visit visit : visits) {
+            long due = start + (long) (TimeUnit.MILLISECONDS.toNanos(visit.createdAt - first) / speed);
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            workers.execute(() -> send(visit, due));
+        }
+        workers.shutdown();
+        workers.awaitTermination(1, TimeUnit.HOURS);
+        report.print(System.out, System.nanoTime() - start);
+    }
+
+    private List<Visit> load() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(options.get("jdbc-url"), options.get("user"), options.get("password"));
+        List<String> methods = Arrays.asList(options.get("methods").toUpperCase().split(","));
+        List<Visit> visits = new JdbcTemplate(dataSource).query(SELECT, (rs, i) -> new Visit(
+                        rs.getTimestamp("created_at").getTime(),
+                        rs.getString("method"),
+                        rs.getString("uri"),
+                        rs.getString("query_string"),
+                        rs.getString("request_body")),
+                Timestamp.valueOf(LocalDateTime.parse(options.get("from"))), Timestamp.valueOf(to()), Integer.parseInt(options.get("limit")));
+        visits.removeIf(visit -> visit.method == null || visit.uri == null || !methods.contains(visit.method));
+        return visits;
+    }
+
+    private LocalDateTime to() {
+        return options.containsKey("to") ? LocalDateTime.parse(options.get("to")) : LocalDateTime.parse(options.get("from")).plusHours(1);
+    }
+
+    private void send(Visit visit, long due) {
+        int status;
+        try {
+            String url = options.get("target") + visit.uri + (visit.queryString == null ? "" : "?" + visit.queryString);
+            HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+            connection.setRequestMethod(visit.method);
+            connection.setConnectTimeout(10000);
+            connection.setReadTimeout(30000);
+            if (options.containsKey("token")) {
+                connection.setRequestProperty("Authorization", "Bearer " + options.get("token"));
+            }
+            if (visit.requestBody != null && !visit.requestBody.isEmpty()) {
+                String body = visit.requestBody.trim();
+                connection.setRequestProperty("Content-Type", body.startsWith("{") || body.startsWith("[")
+                        ? "application/json" : "application/x-www-form-urlencoded");
+                connection.setDoOutput(true);
+                try (OutputStream out = connection.getOutputStream()) {
+                    out.write(visit.requestBody.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            status = connection.getResponseCode();
+            // read to the end so that the connection is kept alive for the next request
+            try (InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream()) {
+                if (in != null) {
+                    byte[] buffer = new byte[8192];
+                    while (in.read(buffer) >= 0) {
+                    }
+                }
+            }
+        } catch (IOException e) {
+            status = 0;
+        }
+        report.record(visit.method, visit.uri, System.nanoTime() - due, status);
+    }
+
+    private static final class Visit {
+
+        private final long createdAt;
+
+        private final String method;
+
+        private final String uri;
+
+        private final String queryString;
+
+        private final String requestBody;
+
+        private Visit(long createdAt, String method, String uri, String queryString, String requestBody) {
+            this.createdAt = createdAt;
+            this.method = method;
+            this.uri = uri;
+            this.queryString = queryString;
+            this.requestBody = requestBody;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.cfgglobal
+
+import com.cfgglobal.test.domain.User
+import com.cfgglobal.test.security.AnonAuthentication
+import com.cfgglobal.test.security.AuthorityAttribute
+import com.cfgglobal.test.security.MyAccessDecisionManager
+import com.cfgglobal.test.security.TokenBasedAuthentication
+import org.springframework.security.access.AccessDeniedException
+import org.springframework.security.access.SecurityConfig
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken
+import org.springframework.security.core.authority.SimpleGrantedAuthority
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class AccessDecisionManagerTest extends Specification {
+
+    def manager = new MyAccessDecisionManager()
+
+    def authentication(String... authorities) {
+        def user = new User()
+        user.username = "admin"
+        user.grantedAuthorities = authorities.collect { new SimpleGrantedAuthority(it) }
+        new TokenBasedAuthentication(user)
+    }
+
+    boolean granted(authentication, attributes) {
+        try {
+            manager.decide(authentication, null, attributes)
+            true
+        } catch (AccessDeniedException ignored) {
+            false
+        }
+    }
+
+    @Unroll
+    def "#required against #authorities is decided like equalsIgnoreCase"() {
+        expect:
+        granted(authentication(authorities as String[]), [new AuthorityAttribute(required)]) == expected
+        granted(authentication(authorities as String[]), [new SecurityConfig(required)]) == expected
+
+        where:
+        required         | authorities                      || expected
+        "Index role"     | ["Index role", "Read role"]      || true
+        " index ROLE "   | ["Index role"]                   || true
+        "Index role"     | ["Index role "]                  || false
+        "Delete role"    | ["Index role", "Read role"]      || false
+        "Never interned" | ["Index role"]                   || false
+        "Index role"     | []                               || false
+    }
+
+    def "any one of the required authorities is enough"() {
+        expect:
+        granted(authentication("Read user"), [new AuthorityAttribute("Index user"), new AuthorityAttribute("Read user")])
+    }
+
+    def "empty attributes and anonymous requests are let through"() {
+        expect:
+        granted(authentication(), [])
+        granted(new AnonAuthentication(), [new AuthorityAttribute("Index role")])
+    }
+
+    def "changing the authorities of a principal recomputes its bits"() {
+        given:
+        def auth = authentication("Index role")
+        granted(auth, [new AuthorityAttribute("Index role")])
+
+        when:
+        auth.principal.grantedAuthorities = [new SimpleGrantedAuthority("Read role")]
+
+        then:
+        !granted(auth, [new AuthorityAttribute("Index role")])
+        granted(auth, [new AuthorityAttribute("Read role")])
+    }
+
+    def "authentications without a user principal use their granted authorities"() {
+        given:
+        def auth = new UsernamePasswordAuthenticationToken("admin", null, [new SimpleGrantedAuthority("Export")])
+
+        expect:
+        granted(auth, [new AuthorityAttribute("export")])
+        !granted(auth, [new AuthorityAttribute("Import")])
+    }
+}
@@ -0,0 +1,145 @@
+package com.cfgglobal
+
+import com.cfgglobal.test.config.app.ApplicationProperties
+import com.cfgglobal.test.security.AdmissionFilter
+import com.cfgglobal.test.security.Bulkhead
+import com.fasterxml.jackson.databind.ObjectMapper
+import org.springframework.mock.web.MockFilterChain
+import org.springframework.mock.web.MockHttpServletRequest
+import org.springframework.mock.web.MockHttpServletResponse
+import spock.lang.Specification
+
+import javax.servlet.FilterChain
+import javax.servlet.ServletRequest
+import javax.servlet.ServletResponse
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.function.LongSupplier
+
+class AdmissionFilterTest extends Specification {
+
+    def properties = new ApplicationProperties()
+
+    AdmissionFilter filter() {
+        def filter = new AdmissionFilter()
+        filter.applicationProperties = properties
+        filter.objectMapper = new ObjectMapper()
+        filter.init()
+        filter
+    }
+
+    static MockHttpServletRequest request(String method, String uri) {
+        def request = new MockHttpServletRequest(method, uri)
+        request.servletPath = uri
+        request
+    }
+
+    def "requests are grouped by the first matching path and method"() {
+        given:
+        def filter = filter()
+
+        expect:
+        filter.bulkhead(request(method, uri)).name == group
+
+        where:
+        method | uri                     || group
+        "POST" | "/auth/login"           || "auth"
+        "GET"  | "/sys/metrics"          || "system"
+        "POST" | "/v1/excel/import"      || "heavy"
+        "GET"  | "/v1/code/country"      || "reference"
+        "GET"  | "/v1/role"              || "list"
+        "POST" | "/v1/role"              || "default"
+        "GET"  | "/v1/role/1"            || "default"
+    }
+
+    def "a full group is rejected with 503 while other groups are admitted"() {
+        given:
+        properties.admission.groups.heavy.limit = 1
+        properties.admission.groups.heavy.queue = 0
+        def filter = filter()
+        def entered = new CountDownLatch(1)
+        def finish = new CountDownLatch(1)
+        def blocking = { ServletRequest req, ServletResponse res -> entered.countDown(); finish.await() } as FilterChain
+        def executor = Executors.newSingleThreadExecutor()
+
+        when:
+        executor.submit { filter.doFilter(request("POST", "/v1/excel/import"), new MockHttpServletResponse(), blocking) }
+        entered.await(5, TimeUnit.SECONDS)
+        def overloaded = new MockHttpServletResponse()
+        filter.doFilter(request("GET", "/v1/excel/export"), overloaded, new MockFilterChain())
+        def login = new MockHttpServletResponse()
+        filter.doFilter(request("POST", "/auth/login"), login, new MockFilterChain())
+        finish.countDown()
+        executor.shutdown()
+        executor.awaitTermination(5, TimeUnit.SECONDS)
+
+        then:
+        overloaded.status == 503
+        overloaded.getHeader("Retry-After") == "1"
+        overloaded.contentAsString.contains("heavy")
+        login.status == 200
+        with(filter.stats().heavy) {
+            admitted == 1
+            rejected == 1
+            inFlight == 0
+        }
+    }
+
+    def "a queued request runs once a slot is released, or times out"() {
+        given:
+        def bulkhead = new Bulkhead("test", 1, 1, 1, 2000, false, 1000)
+        def executor = Executors.newSingleThreadExecutor()
+        bulkhead.tryAcquire()
+
+        when:
+        def queued = executor.submit({ bulkhead.tryAcquire() } as Callable)
+        Thread.sleep(100)
+        def overflow = bulkhead.tryAcquire()
+        bulkhead.release(0)
+
+        then:
+        !overflow
+        queued.get(5, TimeUnit.SECONDS)
+        bulkhead.stats().inFlight == 1
+
+        when:
+        def impatient = new Bulkhead("test", 1, 1, 1, 10, false, 1000)
+        impatient.tryAcquire()
+
+        then:
+        !impatient.tryAcquire()
+        impatient.stats().timedOut == 1
+
+        cleanup:
+        executor.shutdown()
+    }
+
+    def "an adaptive limit is cut by slow requests and grows back with fast ones"() {
+        given:
+        long now = 0
+        def bulkhead = new Bulkhead("test", 2, 10, 0, 0, true, 100, { now } as LongSupplier)
+        def slow = TimeUnit.MILLISECONDS.toNanos(500)
+
+        when: "two slow requests within one threshold, then one after it"
+        3.times { bulkhead.tryAcquire() }
+        bulkhead.release(slow)
+        bulkhead.release(slow)
+        now += TimeUnit.MILLISECONDS.toNanos(100)
+        bulkhead.release(slow)
+
+        then:
+        bulkhead.limit == 8
+
+        when: "fast requests while the limit is in use"
+        200.times {
+            while (bulkhead.tryAcquire()) {
+            }
+            bulkhead.release(0)
+        }
+
+        then:
+        bulkhead.limit == 10
+    }
+}
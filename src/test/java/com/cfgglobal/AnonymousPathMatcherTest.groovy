@@ -0,0 +1,63 @@
+package com.cfgglobal
+
+import com.cfgglobal.test.security.AnonymousPathMatcher
+import org.springframework.mock.web.MockHttpServletRequest
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher
+import org.springframework.security.web.util.matcher.OrRequestMatcher
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class AnonymousPathMatcherTest extends Specification {
+
+    static patterns = ["/", "/**/*.html", "/favicon.ico", "/**/*.css", "/**/*.js", "/images/*", "/login", "/logout",
+                       "/v1/payment/*", "/sys/*", "/files/*", "/v1/transaction/*/receipt", "/v1/rate/**",
+                       "/**/*.min.map", "/v?/public/{id}", "/v?/help/*.pdf"]
+
+    static request(String path) {
+        def request = new MockHttpServletRequest("GET", path)
+        request.servletPath = path
+        request
+    }
+
+    @Unroll
+    def "#path is matched like the ant matchers: #expected"() {
+        given:
+        def ant = new OrRequestMatcher(patterns.collect { new AntPathRequestMatcher(it) })
+        def compiled = AnonymousPathMatcher.of(patterns)
+
+        expect:
+        ant.matches(request(path)) == expected
+        compiled.matches(request(path)) == expected
+
+        where:
+        path                        || expected
+        "/"                         || true
+        "/login"                    || true
+        "/login/"                   || false
+        "/loginx"                   || false
+        "/sys/permission"           || true
+        "/sys/"                     || true
+        "/sys"                      || false
+        "/sys/permission/1"         || false
+        "/v1/rate"                  || true
+        "/v1/rate/usd/nzd"          || true
+        "/v1/rates"                 || false
+        "/index.html"               || true
+        "/app/vendor/main.js"       || true
+        "/app/main.json"            || false
+        "/app/main.min.map"         || true
+        "/v1/transaction/3/receipt" || true
+        "/v1/transaction/3"         || false
+        "/v1/public/7"              || true
+        "/v1/help/guide.pdf"        || true
+        "/v1/help/a/guide.pdf"      || false
+        "/v1/transaction//receipt"  || false
+        "/v1/transaction/3/receipt/"|| false
+        "/v1/role/12"               || false
+    }
+
+    def "/** matches everything"() {
+        expect:
+        AnonymousPathMatcher.of(["/**"]).matches(request("/v1/role/12"))
+    }
+}
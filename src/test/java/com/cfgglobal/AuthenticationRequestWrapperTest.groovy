@@ -0,0 +1,60 @@
+package com.cfgglobal
+
+import com.cfgglobal.test.security.AuthenticationRequestWrapper
+import org.springframework.mock.web.MockHttpServletRequest
+import spock.lang.Specification
+
+class AuthenticationRequestWrapperTest extends Specification {
+
+    static final TYPES = ["application/json", "application/x-www-form-urlencoded"]
+
+    static MockHttpServletRequest request(String contentType, byte[] body) {
+        def request = new MockHttpServletRequest("POST", "/v1/role")
+        request.contentType = contentType
+        request.content = body
+        request
+    }
+
+    def "captures what the application reads, up to the limit"() {
+        given:
+        def body = '{"name":"角色","remark":"' + "x" * 100 + '"}'
+        def wrapper = new AuthenticationRequestWrapper(request("application/json;charset=UTF-8", body.getBytes("UTF-8")), 20, TYPES)
+
+        expect: "nothing is read before the application asks for the body"
+        wrapper.payload == ""
+
+        when:
+        def read = wrapper.reader.text
+
+        then:
+        read == body
+        wrapper.payload == new String(body.getBytes("UTF-8"), 0, 20, "UTF-8")
+    }
+
+    def "bodies of other content types are streamed through without a copy"() {
+        given:
+        def upload = new byte[1 << 20]
+        new Random(1).nextBytes(upload)
+        def wrapper = new AuthenticationRequestWrapper(request("multipart/form-data; boundary=x", upload), 2048, TYPES)
+
+        when:
+        def read = wrapper.inputStream.bytes
+
+        then:
+        read == upload
+        wrapper.payload == null
+    }
+
+    def "single byte reads are captured"() {
+        given:
+        def wrapper = new AuthenticationRequestWrapper(request("application/x-www-form-urlencoded", "a=1&b=2".bytes), 5, TYPES)
+
+        when:
+        def stream = wrapper.inputStream
+        while (stream.read() >= 0) {
+        }
+
+        then:
+        wrapper.payload == "a=1&b"
+    }
+}
@@ -0,0 +1,71 @@
+package com.cfgglobal
+
+import com.cfgglobal.test.cache.LocalMessageBroker
+import com.cfgglobal.test.dao.BranchDao
+import com.cfgglobal.test.service.BranchService
+import com.cfgglobal.test.service.BranchTree
+import spock.lang.Specification
+
+class BranchTreeTest extends Specification {
+
+    def tree = BranchTree.of([
+            [1L, null],
+            [2L, 1L],
+            [3L, 1L],
+            [4L, 2L],
+            [5L, 4L],
+            [6L, null],
+            [7L, 8L],
+            [8L, 7L]].collect { it as Object[] })
+
+    def "paths run from the root down to the branch"() {
+        expect:
+        tree.pathOf(1L) == "/1/"
+        tree.pathOf(5L) == "/1/2/4/5/"
+        tree.pathOf(6L) == "/6/"
+        tree.pathOf(99L) == null
+    }
+
+    def "descendants are found at any depth"() {
+        expect:
+        tree.descendantsOf(1L).toJavaSet() == [2L, 3L, 4L, 5L] as Set
+        tree.descendantsOf(4L).toJavaList() == [5L]
+        tree.descendantsOf(6L).isEmpty()
+    }
+
+    def "every descendant path starts with the path of its ancestor"() {
+        expect:
+        tree.descendantsOf(1L).toJavaList().every { tree.pathOf(it).startsWith(tree.pathOf(1L)) }
+        !tree.pathOf(6L).startsWith(tree.pathOf(1L))
+    }
+
+    def "branches in a cycle have no path"() {
+        expect:
+        tree.pathOf(7L) == null
+        tree.pathOf(8L) == null
+    }
+
+    def "a changed branch drops the tree on every node"() {
+        given:
+        def broker = new LocalMessageBroker()
+        def loads = 0
+        def branchDao = Stub(BranchDao) {
+            findParentIds() >> { loads++; [[1L, null] as Object[]] }
+        }
+        def nodes = (1..2).collect {
+            def node = new BranchService()
+            node.branchDao = branchDao
+            node.messageBroker = broker
+            node.subscribe()
+            node.tree()
+            node
+        }
+
+        when:
+        nodes[0].treeChanged()
+        nodes.each { it.tree(); it.tree() }
+
+        then:
+        loads == 4
+    }
+}
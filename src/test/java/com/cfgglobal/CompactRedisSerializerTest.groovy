@@ -0,0 +1,87 @@
+package com.cfgglobal
+
+import com.cfgglobal.test.cache.CompactRedisSerializer
+import com.cfgglobal.test.domain.Branch
+import com.cfgglobal.test.domain.Permission
+import com.cfgglobal.test.domain.Role
+import com.cfgglobal.test.domain.RolePermission
+import com.cfgglobal.test.domain.User
+import com.cfgglobal.test.security.PrincipalCodec
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer
+import org.springframework.security.core.authority.SimpleGrantedAuthority
+import spock.lang.Specification
+
+class CompactRedisSerializerTest extends Specification {
+
+    def serializer = new CompactRedisSerializer().register(PrincipalCodec.TAG, User, new PrincipalCodec())
+
+    def principal() {
+        def branch = new Branch()
+        branch.id = 3L
+        def role = new Role().setName("admin").setRolePermissions((1..20).collect {
+            new RolePermission().setPermission(new Permission().setAuthKey("Index entity-" + it).setAuthUris("/v[\\d]+/entity-" + it))
+        })
+        role.id = 2L
+        role.version = 5L
+        def user = new User()
+        user.id = 1L
+        user.version = 4L
+        user.username = "admin"
+        user.email = "admin@example.com"
+        user.branch = branch
+        user.role = role
+        user.grantedAuthorities = role.rolePermissions.collect { new SimpleGrantedAuthority(it.permission.authKey) }
+        user
+    }
+
+    def "a principal keeps only what authentication needs"() {
+        given:
+        def user = principal()
+
+        when:
+        def bytes = serializer.serialize(user)
+        User read = serializer.deserialize(bytes) as User
+
+        then:
+        bytes.length < new JdkSerializationRedisSerializer().serialize(user).length / 5
+        read.id == 1L
+        read.username == "admin"
+        read.branch.id == 3L
+        read.role.id == 2L
+        read.role.version == 5L
+        read.version == 4L
+        read.authorities*.authority == user.authorities*.authority
+        read.email == null
+        read.role.rolePermissions == null
+    }
+
+    def "a principal without branch, role or authorities round trips"() {
+        given:
+        def user = new User()
+        user.username = "guest"
+
+        when:
+        User read = serializer.deserialize(serializer.serialize(user)) as User
+
+        then:
+        read.id == null
+        read.username == "guest"
+        read.branch == null
+        read.role == null
+        read.authorities == null
+    }
+
+    def "values written by the jdk serializer are still read"() {
+        given:
+        def bytes = new JdkSerializationRedisSerializer().serialize(principal())
+
+        expect:
+        (serializer.deserialize(bytes) as User).email == "admin@example.com"
+    }
+
+    def "unregistered types fall back to jdk serialization"() {
+        expect:
+        serializer.deserialize(serializer.serialize([a: 1L])) == [a: 1L]
+        serializer.deserialize(serializer.serialize(null)) == null
+    }
+}
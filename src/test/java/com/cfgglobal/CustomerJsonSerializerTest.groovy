@@ -0,0 +1,198 @@
+package com.cfgglobal
+
+import com.cfgglobal.test.config.app.ApplicationProperties
+import com.cfgglobal.test.config.app.ApplicationProperties.LazyAssociations
+import com.cfgglobal.test.config.json.CustomerJsonSerializer
+import com.cfgglobal.test.config.json.JsonConfig
+import com.cfgglobal.test.domain.Permission
+import com.cfgglobal.test.domain.Role
+import com.cfgglobal.test.domain.RolePermission
+import com.cfgglobal.test.web.api.RoleController
+import com.fasterxml.jackson.databind.JsonMappingException
+import com.fasterxml.jackson.databind.ObjectMapper
+import org.hibernate.LazyInitializationException
+import org.hibernate.collection.internal.PersistentBag
+import org.hibernate.proxy.HibernateProxy
+import org.hibernate.proxy.LazyInitializer
+import org.springframework.data.domain.PageImpl
+import org.springframework.data.domain.PageRequest
+import spock.lang.Specification
+
+import java.time.ZonedDateTime
+
+class CustomerJsonSerializerTest extends Specification {
+
+    def properties = new ApplicationProperties()
+
+    def serializer = new CustomerJsonSerializer()
+
+    def mapper = new ObjectMapper()
+
+    def setup() {
+        ApplicationProperties.entityScanPackage = ["com.cfgglobal.test.domain"] as String[]
+        serializer.applicationProperties = properties
+    }
+
+    static Role role(long id) {
+        def permission = new Permission().setEntity("role").setAuthKey("Index role").setHttpMethod("GET")
+        permission.id = 10 + id
+        def rolePermission = new RolePermission()
+        rolePermission.id = 20 + id
+        rolePermission.permission = permission
+        rolePermission.rules = []
+        def role = new Role().setName("role-" + id).setRolePermissions([rolePermission])
+        role.id = id
+        role.createdAt = ZonedDateTime.now()
+        role
+    }
+
+    def "configs of the same projection share one writer"() {
+        expect:
+        serializer.writer(JsonConfig.create("/v1/role", null, "role-permissions").get())
+                .is(serializer.writer(JsonConfig.create("/v1/role/2", null, "role-permissions").get()))
+        !serializer.writer(JsonConfig.create("/v1/role", null, "role-permissions").get())
+                .is(serializer.writer(JsonConfig.create("/v1/role", null, null).get()))
+    }
+
+    def "a page is written with the fields of its projection"() {
+        given:
+        def page = new PageImpl([role(1), role(2)], new PageRequest(0, 20), 2)
+
+        when:
+        def plain = mapper.readTree(serializer.toJson(JsonConfig.create("/v1/role", null, null).get(), page))
+        def embedded = mapper.readTree(serializer.toJson(JsonConfig.create("/v1/role", null, "role-permissions").get(), page))
+
+        then:
+        plain.get("totalElements").asInt() == 2
+        plain.get("content").size() == 2
+        plain.get("content").get(0).fieldNames().toList().sort() == ["id", "name", "version"]
+        embedded.get("content").get(0).get("name").asText() == "role-1"
+        embedded.get("content").get(0).get("rolePermissions").get(0).get("id").asInt() == 21
+        !embedded.get("content").get(0).get("rolePermissions").get(0).has("permission")
+    }
+
+    def "exclusions write everything else and classes outside the projection are written in full"() {
+        when:
+        def json = mapper.readTree(serializer.toJson(RoleController.CLEAN_ROLE, role(1)))
+
+        then:
+        !json.has("createdAt")
+        !json.has("users")
+        json.get("name").asText() == "role-1"
+        json.get("rolePermissions").get(0).get("permission").get("authKey").asText() == "Index role"
+    }
+
+    def "subclasses are written as the class of the projection, decided per property once"() {
+        given:
+        def config = JsonConfig.create("/v1/role", null, null).get()
+        def subclass = new Role() {}
+        subclass.name = "proxy"
+        subclass.id = 3
+
+        when:
+        def first = mapper.readTree(serializer.toJson(config, [subclass, role(1)]))
+        def second = mapper.readTree(serializer.toJson(config, [role(2), subclass]))
+
+        then:
+        first.get(0).fieldNames().toList().sort() == ["id", "name", "version"]
+        first.get(1).fieldNames().toList().sort() == ["id", "name", "version"]
+        second.get(1).get("name").asText() == "proxy"
+    }
+
+    def "a response is streamed as utf-8 and the stream is left open"() {
+        given:
+        def config = JsonConfig.create("/v1/role", null, "role-permissions").get()
+        def page = new PageImpl((1..50).collect { role(it).setName("rôle-" + it) }, new PageRequest(0, 50), 50)
+        def closed = false
+        def out = new ByteArrayOutputStream() {
+            @Override
+            void close() {
+                closed = true
+            }
+        }
+
+        when:
+        serializer.write(config, page, out)
+
+        then:
+        !closed
+        new String(out.toByteArray(), "UTF-8") == serializer.toJson(config, page)
+    }
+
+    def "a response that fails halfway is neither closed as json nor flushed"() {
+        given:
+        def config = JsonConfig.create("/v1/role", null, null).get()
+        def broken = new Role() {
+            @Override
+            String getName() {
+                throw new IllegalStateException("broken")
+            }
+        }
+        broken.id = 3
+        def flushed = false
+        def out = new ByteArrayOutputStream() {
+            @Override
+            void flush() {
+                flushed = true
+            }
+        }
+
+        when:
+        serializer.write(config, [role(1), broken], out)
+
+        then:
+        def e = thrown(JsonMappingException)
+        e.cause instanceof IllegalStateException
+        !flushed
+        !new String(out.toByteArray(), "UTF-8").endsWith("]")
+    }
+
+    static class PermissionProxy extends Permission implements HibernateProxy {
+
+        LazyInitializer hibernateLazyInitializer
+
+        Object writeReplace() {
+            this
+        }
+    }
+
+    def "associations that were not asked for are not loaded for the response"() {
+        given:
+        properties.json.lazyAssociations = lazyAssociations
+        def config = JsonConfig.start()
+                .exclude(Role, RoleController.IGNORE_AUDITOR)
+                .exclude(RolePermission, RoleController.IGNORE_AUDITOR)
+        def role = role(1)
+        role.users = new PersistentBag()
+        role.rolePermissions[0].permission = new PermissionProxy(hibernateLazyInitializer: Stub(LazyInitializer) {
+            isUninitialized() >> true
+            getIdentifier() >> 7L
+        })
+
+        when:
+        def json = mapper.readTree(serializer.toJson(config, role))
+
+        then:
+        !json.has("users")
+        json.get("rolePermissions").get(0).get("id").asInt() == 21
+        json.get("rolePermissions").get(0).get("permission")?.toString() == permission
+
+        where:
+        lazyAssociations               || permission
+        LazyAssociations.SKIP          || null
+        LazyAssociations.STUB          || '{"id":7}'
+    }
+
+    def "lazy associations are loaded by default"() {
+        given:
+        def config = JsonConfig.start().exclude(Role, RoleController.IGNORE_AUDITOR)
+        def role = role(1).setUsers(new PersistentBag())
+
+        when:
+        serializer.toJson(config, role)
+
+        then:
+        def e = thrown(JsonMappingException)
+        e.cause instanceof LazyInitializationException
+    }
+}
@@ -0,0 +1,60 @@
+package com.cfgglobal
+
+import com.cfgglobal.test.config.app.ApplicationProperties
+import com.cfgglobal.test.config.json.EndpointRegistry
+import com.cfgglobal.test.config.json.JsonConfig
+import com.cfgglobal.test.domain.Permission
+import com.cfgglobal.test.domain.Role
+import com.cfgglobal.test.domain.RolePermission
+import com.cfgglobal.test.domain.Rule
+import spock.lang.Specification
+
+class EndpointRegistryTest extends Specification {
+
+    EndpointRegistry registry = new EndpointRegistry()
+
+    def setup() {
+        ApplicationProperties.entityScanPackage = ["com.cfgglobal.test.domain"] as String[]
+        registry.register([Role, RolePermission, Permission, Rule, String])
+    }
+
+    static List<List<Object>> describe(JsonConfig config) {
+        config.list.toJavaList().collect { [it.type, it.include.map { it.metadata.name }.toJavaList().sort()] }
+    }
+
+    def "endpoint segments resolve to their entity and q object"() {
+        expect:
+        registry.find("role-permission").get().type == RolePermission
+        registry.find("role").get().path.type == Role
+        registry.find("role").get().firstLevel(false)*.metadata*.name.contains("name")
+        !registry.find("role").get().firstLevel(false)*.metadata*.name.contains("createdAt")
+        registry.find("string").empty
+        registry.find("login").empty
+    }
+
+    def "configs are built as JsonConfig.create does and reused"() {
+        when:
+        def config = registry.jsonConfig("/v1/role/1", null, "role-permissions,role-permissions.rules")
+
+        then:
+        describe(config.get()) == describe(JsonConfig.create("/v1/role/1", null, "role-permissions,role-permissions.rules").get())
+        registry.jsonConfig("/v1/role/2", null, "role-permissions,role-permissions.rules").get().is(config.get())
+        !registry.jsonConfig("/v1/role/2", "name", "role-permissions,role-permissions.rules").get().is(config.get())
+        registry.jsonConfig("/auth/login", null, null).empty
+    }
+
+    def "invalid embedded associations are reported every time"() {
+        when:
+        registry.jsonConfig("/v1/role", null, "permissions")
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message.contains("role-permissions")
+
+        when:
+        registry.jsonConfig("/v1/role", null, "permissions")
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+}
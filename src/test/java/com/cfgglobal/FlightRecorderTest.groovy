@@ -0,0 +1,69 @@
+package com.cfgglobal
+
+import com.cfgglobal.test.config.app.ApplicationProperties
+import com.cfgglobal.test.metrics.FlightRecorder
+import spock.lang.Specification
+
+import java.nio.file.Files
+
+class FlightRecorderTest extends Specification {
+
+    def properties = new ApplicationProperties()
+
+    FlightRecorder recorder
+
+    def setup() {
+        properties.profile.directory = Files.createTempDirectory("profile").toString()
+        recorder = new FlightRecorder()
+        recorder.applicationProperties = properties
+    }
+
+    def cleanup() {
+        new File(properties.profile.directory).deleteDir()
+    }
+
+    static long busy(long until) {
+        long sum = 0
+        while (System.currentTimeMillis() < until) {
+            sum += new StringBuilder().append(sum).append(System.nanoTime()).toString().length()
+        }
+        sum
+    }
+
+    def "a recording is summarized by our own methods"() {
+        when:
+        def started = recorder.start("profile", 30)
+        busy(System.currentTimeMillis() + 1000)
+        def stopped = recorder.stop()
+        def file = recorder.file(started.name as String)
+        def summary = recorder.summary(file, 5)
+
+        then:
+        started.running
+        !stopped.running
+        file.length() > 0
+        recorder.list()*.name == [started.name]
+        summary.executionSamples > 0
+        summary.hotMethods.keySet().every { it.startsWith("com.cfgglobal.") }
+        summary.hotMethods.keySet().any { it.contains("FlightRecorderTest.busy") }
+        summary.allocationSites.keySet().every { it.startsWith("com.cfgglobal.") }
+    }
+
+    def "settings, duration and names are checked"() {
+        when:
+        recorder.start("everything", 10)
+
+        then:
+        thrown(IllegalArgumentException)
+
+        when:
+        recorder.start("default", 301)
+
+        then:
+        thrown(IllegalArgumentException)
+
+        expect:
+        recorder.file("../../etc/passwd") == null
+        recorder.file("profile-20260101-000000") == null
+    }
+}
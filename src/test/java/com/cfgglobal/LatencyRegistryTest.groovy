@@ -0,0 +1,127 @@
+package com.cfgglobal
+
+import com.cfgglobal.test.metrics.LatencyHistogram
+import com.cfgglobal.test.metrics.LatencyRegistry
+import com.cfgglobal.test.metrics.ThreadResourceMeter
+import spock.lang.Specification
+
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class LatencyRegistryTest extends Specification {
+
+    def "percentiles are within the bucket precision"() {
+        given:
+        def random = new Random(7)
+        def values = (1..100000).collect { (long) Math.exp(random.nextDouble() * 20) }
+        def histogram = new LatencyHistogram()
+        values.each { histogram.record(it) }
+        def sorted = values.sort()
+
+        expect:
+        [0.5, 0.9, 0.99, 0.999].every { q ->
+            long exact = sorted[(int) Math.ceil(q * sorted.size()) - 1]
+            long estimate = histogram.percentile(q)
+            estimate >= exact && estimate <= exact + exact / 32 + 1
+        }
+        histogram.percentile(1) == sorted.last()
+        histogram.count() == 100000
+        histogram.max() == sorted.last()
+    }
+
+    def "small, huge and negative values"() {
+        given:
+        def histogram = new LatencyHistogram()
+
+        when:
+        histogram.record(0)
+        histogram.record(-5)
+        histogram.record(31)
+        histogram.record(Long.MAX_VALUE)
+
+        then:
+        histogram.percentile(0.5) == 0
+        histogram.percentile(0.75) == 31
+        histogram.max() == LatencyHistogram.MAX_VALUE
+    }
+
+    def "concurrent recordings are all counted"() {
+        given:
+        def registry = new LatencyRegistry()
+        def pool = Executors.newFixedThreadPool(8)
+
+        when:
+        8.times { pool.execute { 10000.times { registry.recordEndpoint("GET", "/v1/role/{id}", it * 1000L) } } }
+        pool.shutdown()
+        pool.awaitTermination(10, TimeUnit.SECONDS)
+
+        then:
+        registry.snapshot().endpoints["/v1/role/{id} GET"].count == 80000
+    }
+
+    def "methods outside the standard ones share one endpoint"() {
+        given:
+        def registry = new LatencyRegistry()
+
+        when:
+        1000.times { registry.recordEndpoint("X-METHOD-" + it, null, 1000) }
+        registry.recordResources("get", null, 100, 1000)
+        registry.recordEndpoint("DELETE", null, 1000)
+
+        then:
+        registry.snapshot().endpoints.keySet() == ["unmatched DELETE", "unmatched OTHER"] as Set
+        registry.snapshot().endpoints["unmatched OTHER"].count == 1000
+    }
+
+    def "prometheus summaries in seconds"() {
+        given:
+        def registry = new LatencyRegistry()
+        registry.recordEndpoint("GET", "/v1/role", 2000000)
+        registry.recordEndpoint("POST", null, 1000000)
+        registry.recordStage(LatencyRegistry.Stage.TOKEN_PARSE, 5000)
+
+        when:
+        def lines = registry.prometheus().readLines()
+
+        then:
+        lines.contains('# TYPE http_server_requests_seconds summary')
+        lines.contains('http_server_requests_seconds{method="GET",uri="/v1/role",quantile="0.99"} 0.002')
+        lines.contains('http_server_requests_seconds_count{method="POST",uri="unmatched"} 1')
+        lines.contains('access_control_stage_seconds_sum{stage="token_parse"} 5.0E-6')
+        lines.contains('access_control_stage_seconds_count{stage="handler"} 0')
+    }
+
+    def "allocation and cpu time per endpoint while accounting is on"() {
+        given:
+        def meter = new ThreadResourceMeter()
+        def registry = new LatencyRegistry()
+
+        expect:
+        meter.supported
+        meter.setEnabled(true)
+
+        when:
+        long allocated = meter.allocatedBytes()
+        long cpu = meter.cpuTime()
+        def blocks = (1..10).collect { new byte[1 << 20] }
+        allocated = meter.allocatedBytes() - allocated
+        cpu = meter.cpuTime() - cpu
+        registry.recordEndpoint("GET", "/v1/excel/{entity}", 5000000)
+        registry.recordResources("GET", "/v1/excel/{entity}", allocated, cpu)
+        registry.recordEndpoint("GET", "/v1/role", 1000000)
+
+        then:
+        blocks.size() == 10
+        allocated >= 10 << 20
+        cpu >= 0
+        with(registry.snapshot().endpoints) {
+            it["/v1/excel/{entity} GET"].allocatedBytes.max >= 10 << 20
+            it["/v1/excel/{entity} GET"].cpuTime.count == 1
+            !it["/v1/role GET"].containsKey("allocatedBytes")
+        }
+        registry.prometheus().readLines().count { it.startsWith("http_server_requests_allocated_bytes_count") } == 1
+
+        cleanup:
+        meter.setEnabled(false)
+    }
+}
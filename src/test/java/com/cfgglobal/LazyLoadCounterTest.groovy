@@ -0,0 +1,39 @@
+package com.cfgglobal
+
+import com.cfgglobal.test.metrics.LazyLoadCounter
+import org.hibernate.event.spi.LoadEvent
+import org.hibernate.event.spi.LoadEventListener
+import spock.lang.Specification
+
+class LazyLoadCounterTest extends Specification {
+
+    def counter = new LazyLoadCounter()
+
+    def event = new LoadEvent(1L, "com.cfgglobal.test.domain.Role", false, null)
+
+    def "proxies and collections initialized while counting are counted"() {
+        when:
+        LazyLoadCounter.start()
+        counter.onLoad(event, LoadEventListener.IMMEDIATE_LOAD)
+        counter.onLoad(event, LoadEventListener.INTERNAL_LOAD_EAGER)
+        counter.onLoad(event, LoadEventListener.GET)
+        counter.onInitializeCollection(null)
+        counter.onInitializeCollection(null)
+
+        then:
+        LazyLoadCounter.stop() == 3
+    }
+
+    def "nothing is counted outside of start and stop"() {
+        when:
+        counter.onInitializeCollection(null)
+        def notStarted = LazyLoadCounter.stop()
+        LazyLoadCounter.start()
+        def other = Thread.start { counter.onInitializeCollection(null) }
+        other.join()
+
+        then:
+        notStarted == 0
+        LazyLoadCounter.stop() == 0
+    }
+}
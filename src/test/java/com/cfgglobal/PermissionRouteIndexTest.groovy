@@ -0,0 +1,148 @@
+package com.cfgglobal
+
+import com.cfgglobal.test.domain.Permission
+import com.cfgglobal.test.security.AuthorityAttribute
+import com.cfgglobal.test.security.MyAccessDecisionManager
+import com.cfgglobal.test.security.PermissionRouteIndex
+import org.springframework.security.access.AccessDeniedException
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken
+import org.springframework.security.core.authority.SimpleGrantedAuthority
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.util.regex.Pattern
+
+import static com.cfgglobal.test.service.GeneratorService.DIGIT
+
+class PermissionRouteIndexTest extends Specification {
+
+    static Permission permission(String authKey, String method, String authUris) {
+        new Permission().setEntity("test").setAuthKey(authKey).setHttpMethod(method).setAuthUris(authUris)
+    }
+
+    static List<Permission> genPermission(String name) {
+        String endPoint = "/" + name
+        [
+                permission("Index " + name, "GET", "/v" + DIGIT + endPoint),
+                permission("Create " + name, "POST", "/v" + DIGIT + endPoint),
+                permission("Read " + name, "GET", "/v" + DIGIT + endPoint + "/" + DIGIT),
+                permission("Update " + name, "PUT", "/v" + DIGIT + endPoint + "/" + DIGIT),
+                permission("Update " + name, "PATCH", "/v" + DIGIT + endPoint + "/" + DIGIT),
+                permission("Delete " + name, "DELETE", "/v" + DIGIT + endPoint + "/" + DIGIT)
+        ]
+    }
+
+    static Permission linearScan(List<Permission> permissions, String uri) {
+        permissions.find { p -> p.authUris.split(";").any { Pattern.matches(it, uri) } }
+    }
+
+    def permissions = ["role", "user", "role-permission", "visit-record"].collectMany { genPermission(it) } +
+            [permission("Export", "GET", "/v1/excel/.*;/v1/attachment/download"),
+             permission("Anything", "GET", ".*/report")]
+
+    @Unroll
+    def "#method #uri resolves like the linear scan"() {
+        given:
+        def index = PermissionRouteIndex.of(permissions)
+
+        when:
+        def permission = index.find(method, uri)
+
+        then:
+        (permission == null) == (linearScan(permissions, uri) == null)
+        permission?.authKey == authKey
+
+        where:
+        method   | uri                        || authKey
+        "GET"    | "/v1/role"                 || "Index role"
+        "POST"   | "/v1/role"                 || "Create role"
+        "GET"    | "/v1/role/12"              || "Read role"
+        "PUT"    | "/v1/role/12"              || "Update role"
+        "DELETE" | "/v2/role-permission/3"    || "Delete role-permission"
+        "GET"    | "/v1/role/abc"             || null
+        "GET"    | "/v1/excel/user"           || "Export"
+        "GET"    | "/v1/attachment/download"  || "Export"
+        "GET"    | "/v1/branch/1/report"      || "Anything"
+        "GET"    | "/v1/branch"               || null
+        "GET"    | "/"                        || null
+    }
+
+    def "falls back to any method when none is declared for the request method"() {
+        given:
+        def index = PermissionRouteIndex.of([permission("Read role", "GET", "/v1/role/[\\d]+")])
+
+        expect:
+        index.find("OPTIONS", "/v1/role/1").authKey == "Read role"
+        index.find(null, "/v1/role/1").authKey == "Read role"
+    }
+
+    @Unroll
+    def "first loaded permission wins across anchored and unanchored patterns: #order"() {
+        given:
+        def generic = permission("Generic", "GET", "/v[\\d]+/.*")
+        def role = permission("Index role", "GET", "/v1/role")
+        def index = PermissionRouteIndex.of(order == "generic first" ? [generic, role] : [role, generic])
+
+        expect:
+        index.find("GET", "/v1/role").authKey == authKey
+        index.find("GET", "/v1/user").authKey == "Generic"
+        index.size() == 2
+
+        where:
+        order           || authKey
+        "generic first" || "Generic"
+        "role first"    || "Index role"
+    }
+
+    def "patterns with a top-level alternation match any alternative"() {
+        given:
+        def index = PermissionRouteIndex.of([
+                permission("Roles", "GET", "/v1/role|/x/y"),
+                permission("Grouped", "GET", "/v1/(user|branch)")])
+
+        expect:
+        index.find("GET", "/v1/role").authKey == "Roles"
+        index.find("GET", "/x/y").authKey == "Roles"
+        index.find("GET", "/v1/branch").authKey == "Grouped"
+        index.find("GET", "/v1/rule") == null
+    }
+
+    def "methods are compared case-insensitively in any locale"() {
+        given:
+        def defaultLocale = Locale.getDefault()
+        Locale.setDefault(new Locale("tr"))
+        def index = PermissionRouteIndex.of([permission("Describe role", "options", "/v1/role/[\\d]+")])
+
+        expect:
+        index.find("options", "/v1/role/1").authKey == "Describe role"
+        index.find("OPTIONS", "/v1/role/1").authKey == "Describe role"
+
+        cleanup:
+        Locale.setDefault(defaultLocale)
+    }
+
+    def "a permission without an auth key is required by no one and does not break the index"() {
+        given:
+        def missing = permission("", "GET", "/v1/role")
+        missing.@authKey = null
+        def index = PermissionRouteIndex.of([
+                missing,
+                permission(" ", "GET", "/v1/user"),
+                permission("Index branch", "GET", "/v1/branch")])
+        def nobody = new UsernamePasswordAuthenticationToken("admin", null, [new SimpleGrantedAuthority("NOBODY")])
+
+        when:
+        new MyAccessDecisionManager().decide(nobody, null, index.attributes("GET", "/v1/role"))
+
+        then:
+        thrown(AccessDeniedException)
+        index.attributes("GET", "/v1/role") == [AuthorityAttribute.NOBODY]
+        index.attributes("GET", "/v1/user") == [AuthorityAttribute.NOBODY]
+        index.attributes("GET", "/v1/branch")*.attribute == ["Index branch"]
+    }
+
+    def "empty index protects nothing"() {
+        expect:
+        PermissionRouteIndex.EMPTY.find("GET", "/v1/role") == null
+    }
+}
@@ -0,0 +1,100 @@
+package com.cfgglobal
+
+import com.cfgglobal.test.cache.CacheClient
+import com.cfgglobal.test.cache.LocalMessageBroker
+import com.cfgglobal.test.config.app.ApplicationProperties
+import com.cfgglobal.test.domain.User
+import com.cfgglobal.test.security.PrincipalCache
+import com.cfgglobal.test.security.SecurityChangedEvent
+import spock.lang.Specification
+
+import java.util.concurrent.ConcurrentHashMap
+
+class PrincipalCacheTest extends Specification {
+
+    def broker = new LocalMessageBroker()
+
+    def redis = new ConcurrentHashMap<String, Object>()
+
+    def cacheClient = Stub(CacheClient) {
+        get(_ as String) >> { String key -> redis[key] }
+        set(_ as String, _) >> { String key, Object value -> redis[key] = value }
+        deleteByKey(_ as String) >> { String key -> redis.remove(key) }
+        deleteByPattern(_ as String) >> { String pattern -> redis.keySet().removeIf { it.startsWith(pattern - "*") } }
+    }
+
+    def node() {
+        def cache = new PrincipalCache()
+        cache.cacheClient = cacheClient
+        cache.messageBroker = broker
+        cache.applicationProperties = new ApplicationProperties().setUserClass("User")
+        cache.init()
+        cache
+    }
+
+    def user(String username) {
+        def user = new User()
+        user.username = username
+        user
+    }
+
+    def "hot users are served from the local tier"() {
+        given:
+        def cache = node()
+        def loads = 0
+
+        when:
+        3.times { cache.get("admin", { loads++; user("admin") }) }
+
+        then:
+        loads == 1
+        redis.containsKey("User-admin")
+        cache.localStats().hitCount() == 2
+        cache.remoteStats().missCount() == 1
+    }
+
+    def "a node fills its local tier from the shared tier"() {
+        given:
+        def a = node()
+        def b = node()
+        a.get("admin", { user("admin") })
+
+        when:
+        def loaded = b.get("admin", { throw new IllegalStateException("database should not be hit") })
+
+        then:
+        loaded.username == "admin"
+        b.remoteStats().hitCount() == 1
+    }
+
+    def "evicting a user reaches the local tier of every node"() {
+        given:
+        def a = node()
+        def b = node()
+        a.get("admin", { user("admin") })
+        b.get("admin", { user("admin") })
+
+        when:
+        a.evict("admin")
+        def reloaded = b.get("admin", { user("admin").setName("renamed") })
+
+        then:
+        redis["User-admin"].name == "renamed"
+        reloaded.name == "renamed"
+    }
+
+    def "a security change drops every cached principal"() {
+        given:
+        def a = node()
+        def b = node()
+        ["admin", "guest"].each { name -> a.get(name, { user(name) }); b.get(name, { user(name) }) }
+
+        when:
+        a.onSecurityChanged(new SecurityChangedEvent(this, "update Role", false))
+        b.onSecurityChanged(new SecurityChangedEvent(this, "update Role", true))
+
+        then:
+        redis.isEmpty()
+        b.get("guest", { user("guest").setName("reloaded") }).name == "reloaded"
+    }
+}
@@ -0,0 +1,106 @@
+package com.cfgglobal
+
+import com.cfgglobal.test.security.LocalRateLimiter
+import com.cfgglobal.test.security.RedisRateLimiter
+import org.springframework.data.redis.core.StringRedisTemplate
+import org.springframework.data.redis.core.ValueOperations
+import spock.lang.Specification
+
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.function.LongSupplier
+
+class RateLimiterTest extends Specification {
+
+    static final long WINDOW = 60_000
+
+    long now = 10 * WINDOW
+
+    def limiter = new LocalRateLimiter({ now } as LongSupplier)
+
+    def acquire(String key, int times, long limit = 5) {
+        (1..times).count { limiter.tryAcquire(key, limit, WINDOW) }
+    }
+
+    def "a key gets its limit per window"() {
+        expect:
+        acquire("user:1", 8) == 5
+        acquire("user:2", 8) == 5
+    }
+
+    def "the previous window counts for the part that still overlaps"() {
+        given:
+        acquire("ip:10.0.0.1", 10, 10)
+
+        when: "a quarter into the next window, 75% of the previous ten still count"
+        now += WINDOW + WINDOW / 4
+
+        then:
+        acquire("ip:10.0.0.1", 10, 10) == 3
+
+        when: "once a whole window passed without requests the budget is full again"
+        now += 2 * WINDOW
+
+        then:
+        acquire("ip:10.0.0.1", 20, 10) == 10
+    }
+
+    def "idle keys start again from zero"() {
+        given:
+        acquire("user:1", 5)
+
+        when:
+        now += 3 * WINDOW
+
+        then:
+        acquire("user:1", 5) == 5
+    }
+
+    def "concurrent requests never exceed the limit"() {
+        given:
+        def pool = Executors.newFixedThreadPool(8)
+        def granted = new AtomicInteger()
+
+        when:
+        8.times {
+            pool.submit {
+                1000.times { i ->
+                    if (limiter.tryAcquire("user:" + (i % 4), 100, WINDOW)) {
+                        granted.incrementAndGet()
+                    }
+                }
+            }
+        }
+        pool.shutdown()
+        pool.awaitTermination(10, TimeUnit.SECONDS)
+
+        then:
+        granted.get() == 400
+    }
+
+    def "nodes backed by the same redis share one budget"() {
+        given: "an in-memory stand-in for the redis counters"
+        def counters = [:]
+        def values = Stub(ValueOperations) {
+            increment(_ as String, _ as Long) >> { String key, long delta -> counters[key] = (counters[key] ?: 0L) + delta }
+            get(_) >> { key -> counters[key]?.toString() }
+        }
+        def template = Stub(StringRedisTemplate) {
+            opsForValue() >> values
+        }
+        def nodes = (1..2).collect {
+            def node = new RedisRateLimiter()
+            node.template = template
+            node.clock = { now } as LongSupplier
+            node
+        }
+
+        when:
+        def granted = (1..10).count { nodes[it % 2].tryAcquire("user:1", 6, WINDOW) }
+
+        then:
+        granted == 6
+        counters["access-control:rate:user:1:10"] == 6
+    }
+}
@@ -0,0 +1,107 @@
+package com.cfgglobal
+
+import com.cfgglobal.test.cache.CompactRedisSerializer
+import com.cfgglobal.test.config.app.ApplicationProperties
+import com.cfgglobal.test.config.jpa.SecurityAuditor
+import com.cfgglobal.test.domain.Rule
+import com.cfgglobal.test.domain.User
+import com.cfgglobal.test.security.PrincipalCodec
+import org.springframework.jdbc.datasource.DriverManagerDataSource
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken
+import org.springframework.security.core.context.SecurityContextHolder
+import spock.lang.Shared
+import spock.lang.Specification
+
+import javax.persistence.EntityManager
+import javax.persistence.EntityManagerFactory
+
+/**
+ * Persists entities audited by a principal that was read back from the principal cache.
+ */
+class SecurityAuditorTest extends Specification {
+
+    @Shared
+    EntityManagerFactory entityManagerFactory
+
+    EntityManager entityManager
+
+    def serializer = new CompactRedisSerializer().register(PrincipalCodec.TAG, User, new PrincipalCodec())
+
+    def auditor = new SecurityAuditor()
+
+    User decoded
+
+    def setupSpec() {
+        ApplicationProperties.enums = []
+        def factory = new LocalContainerEntityManagerFactoryBean(
+                dataSource: new DriverManagerDataSource("jdbc:h2:mem:security-auditor;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", ""),
+                packagesToScan: ["com.cfgglobal.test.domain"] as String[],
+                jpaVendorAdapter: new HibernateJpaVendorAdapter())
+        factory.jpaPropertyMap = ["hibernate.hbm2ddl.auto": "create-drop"]
+        factory.afterPropertiesSet()
+        entityManagerFactory = factory.object
+    }
+
+    def cleanupSpec() {
+        entityManagerFactory?.close()
+    }
+
+    def setup() {
+        entityManager = entityManagerFactory.createEntityManager()
+        auditor.entityManager = entityManager
+        entityManager.transaction.begin()
+        def user = new User()
+        user.username = "admin-" + UUID.randomUUID()
+        user.email = "admin@example.com"
+        user.password = "secret"
+        entityManager.persist(user)
+        entityManager.transaction.commit()
+        entityManager.clear()
+        decoded = serializer.deserialize(serializer.serialize(user)) as User
+        SecurityContextHolder.context.authentication = new UsernamePasswordAuthenticationToken(decoded, null, [])
+    }
+
+    def cleanup() {
+        SecurityContextHolder.clearContext()
+        entityManager.close()
+    }
+
+    Rule persist(User creator) {
+        def rule = new Rule().setName("branch")
+        rule.creator = creator
+        rule.modifier = creator
+        entityManager.transaction.begin()
+        entityManager.persist(rule)
+        entityManager.transaction.commit()
+        entityManager.clear()
+        entityManager.find(Rule, rule.id)
+    }
+
+    def "an entity audited by a decoded principal is persisted"() {
+        when:
+        def rule = persist(auditor.currentAuditor)
+
+        then:
+        decoded.version != null
+        rule.creator.id == decoded.id
+        rule.modifier.username == decoded.username
+    }
+
+    def "a decoded principal is a detached user, not a transient one"() {
+        when:
+        def rule = persist(decoded)
+
+        then:
+        rule.creator.id == decoded.id
+    }
+
+    def "there is no auditor without an authenticated user"() {
+        given:
+        SecurityContextHolder.clearContext()
+
+        expect:
+        auditor.currentAuditor == null
+    }
+}
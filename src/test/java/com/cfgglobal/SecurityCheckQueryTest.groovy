@@ -0,0 +1,118 @@
+package com.cfgglobal
+
+import com.cfgglobal.test.base.Filter
+import com.cfgglobal.test.config.app.ApplicationProperties
+import com.cfgglobal.test.dao.base.BaseDaoImpl
+import com.cfgglobal.test.domain.Role
+import io.vavr.collection.List
+import org.hibernate.SessionFactory
+import org.hibernate.stat.Statistics
+import org.springframework.jdbc.datasource.DriverManagerDataSource
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import javax.persistence.EntityManager
+import javax.persistence.EntityManagerFactory
+
+/**
+ * Runs the single row security check against an embedded database and counts what Hibernate does.
+ */
+class SecurityCheckQueryTest extends Specification {
+
+    @Shared
+    EntityManagerFactory entityManagerFactory
+
+    @Shared
+    Statistics statistics
+
+    EntityManager entityManager
+
+    BaseDaoImpl<Role, Long> roleDao
+
+    def visible = List.of(new Filter().addCondition("name", "visible", Filter.OPERATOR_LIKE))
+
+    def setupSpec() {
+        ApplicationProperties.enums = []
+        def factory = new LocalContainerEntityManagerFactoryBean(
+                dataSource: new DriverManagerDataSource("jdbc:h2:mem:security-check;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", ""),
+                packagesToScan: ["com.cfgglobal.test.domain"] as String[],
+                jpaVendorAdapter: new HibernateJpaVendorAdapter())
+        factory.jpaPropertyMap = ["hibernate.hbm2ddl.auto": "create-drop", "hibernate.generate_statistics": "true"]
+        factory.afterPropertiesSet()
+        entityManagerFactory = factory.object
+        statistics = entityManagerFactory.unwrap(SessionFactory).statistics
+    }
+
+    def cleanupSpec() {
+        entityManagerFactory?.close()
+    }
+
+    def setup() {
+        entityManager = entityManagerFactory.createEntityManager()
+        roleDao = new BaseDaoImpl<>(Role, entityManager)
+    }
+
+    def cleanup() {
+        entityManager.close()
+    }
+
+    def insertRoles(int count) {
+        entityManager.transaction.begin()
+        entityManager.createQuery("delete from Role").executeUpdate()
+        count.times { entityManager.persist(new Role().setName(it % 10 == 0 ? "hidden-" + it : "visible-" + it)) }
+        entityManager.transaction.commit()
+        entityManager.clear()
+        entityManager.createQuery("select r.id from Role r order by r.id", Long).resultList
+    }
+
+    def measure(Closure action) {
+        entityManager.clear()
+        statistics.clear()
+        def result = action()
+        [result: result, statements: statistics.prepareStatementCount, entities: statistics.entityLoadCount]
+    }
+
+    @Unroll
+    def "checking one row costs one statement and one entity with #rows rows"() {
+        given:
+        def ids = insertRoles(rows)
+        def visibleId = ids[rows - 1]
+        def hiddenId = ids[0]
+
+        when:
+        def found = measure { roleDao.findOneByFilter(visibleId, visible) }
+        def denied = measure { roleDao.findOneByFilter(hiddenId, visible) }
+        def exists = measure { roleDao.existsByFilter(visibleId, visible) }
+        def scan = measure { roleDao.findByFilter(visible) }
+
+        then:
+        found.result.get().id == visibleId
+        found.statements == 1
+        found.entities == 1
+
+        !denied.result.isPresent()
+        denied.statements == 1
+        denied.entities == 0
+
+        exists.result
+        exists.statements == 1
+        exists.entities == 0
+
+        scan.entities == rows - rows / 10
+
+        where:
+        rows << [10, 1000, 5000]
+    }
+
+    def "a missing id is not found"() {
+        given:
+        insertRoles(10)
+
+        expect:
+        !roleDao.findOneByFilter(-1L, visible).isPresent()
+        !roleDao.existsByFilter(-1L, List.empty())
+    }
+}
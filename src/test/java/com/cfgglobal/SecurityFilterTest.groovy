@@ -0,0 +1,105 @@
+package com.cfgglobal
+
+import com.cfgglobal.test.base.Filter
+import com.cfgglobal.test.domain.Permission
+import com.cfgglobal.test.domain.Role
+import com.cfgglobal.test.domain.RolePermission
+import com.cfgglobal.test.domain.Rule
+import com.cfgglobal.test.domain.User
+import com.cfgglobal.test.security.SecurityChangedEvent
+import com.cfgglobal.test.security.TokenBasedAuthentication
+import com.cfgglobal.test.service.RoleService
+import com.cfgglobal.test.service.rule.RuleService
+import com.cfgglobal.test.service.rule.SecurityFilterImpl
+import com.cfgglobal.test.service.rule.access.AccessRule
+import org.springframework.mock.web.MockHttpServletRequest
+import org.springframework.security.access.AccessDeniedException
+import org.springframework.security.core.context.SecurityContextHolder
+import org.springframework.web.context.request.RequestContextHolder
+import org.springframework.web.context.request.ServletRequestAttributes
+import spock.lang.Specification
+
+class SecurityFilterTest extends Specification {
+
+    def roleService = Mock(RoleService)
+
+    def ruleService = Mock(RuleService)
+
+    def securityFilter = new SecurityFilterImpl()
+
+    def execs = 0
+
+    def branchRule = Stub(AccessRule) {
+        exec(_) >> { execs++; new Filter() }
+    }
+
+    static RolePermission rolePermission(long id, String authKey, String method, String authUris, String... rules) {
+        def permission = new Permission().setAuthKey(authKey).setHttpMethod(method).setAuthUris(authUris)
+        permission.id = id
+        new RolePermission().setPermission(permission).setRules(rules.collect { new Rule().setName(it) })
+    }
+
+    def rolePermissions = [
+            rolePermission(1, "Create role", "POST", "/v[\\d]+/role"),
+            rolePermission(2, "Index role", "GET", "/v[\\d]+/role", "branch")]
+
+    def setup() {
+        def role = new Role()
+        role.id = 7L
+        role.version = 1L
+        def user = new User()
+        user.username = "admin"
+        user.role = role
+        SecurityContextHolder.context.authentication = new TokenBasedAuthentication(user)
+        RequestContextHolder.requestAttributes = new ServletRequestAttributes(new MockHttpServletRequest())
+        securityFilter.roleService = roleService
+        securityFilter.ruleService = ruleService
+    }
+
+    def cleanup() {
+        SecurityContextHolder.clearContext()
+        RequestContextHolder.resetRequestAttributes()
+    }
+
+    def "the plan of a role is compiled once and filters are computed once per request"() {
+        when:
+        3.times { securityFilter.query("GET", "/v1/role") }
+        RequestContextHolder.requestAttributes = new ServletRequestAttributes(new MockHttpServletRequest())
+        def filters = securityFilter.query("GET", "/v1/role")
+
+        then:
+        1 * roleService.findRolePermissions(7L) >> rolePermissions
+        1 * ruleService.findAccessRules("branch") >> branchRule
+        filters.size() == 1
+        execs == 2
+    }
+
+    def "rules are taken from the permission of the request method"() {
+        given:
+        roleService.findRolePermissions(7L) >> rolePermissions
+
+        expect:
+        securityFilter.query("POST", "/v1/role").isEmpty()
+    }
+
+    def "requests outside the role are denied"() {
+        given:
+        roleService.findRolePermissions(7L) >> rolePermissions
+
+        when:
+        securityFilter.query("GET", "/v1/user")
+
+        then:
+        thrown(AccessDeniedException)
+    }
+
+    def "a security change recompiles the plan"() {
+        when:
+        securityFilter.query("POST", "/v1/role")
+        securityFilter.onSecurityChanged(new SecurityChangedEvent(this, "update Role", true))
+        securityFilter.query("POST", "/v1/role")
+
+        then:
+        2 * roleService.findRolePermissions(7L) >> rolePermissions
+    }
+}
@@ -0,0 +1,123 @@
+package com.cfgglobal
+
+import com.cfgglobal.test.cache.LocalMessageBroker
+import com.cfgglobal.test.dao.PermissionDao
+import com.cfgglobal.test.domain.Permission
+import com.cfgglobal.test.security.MyInvocationSecurityMetadataSourceService
+import com.cfgglobal.test.security.SecurityChangedEvent
+import com.cfgglobal.test.security.SecurityInvalidator
+import org.springframework.context.ApplicationEventPublisher
+import org.springframework.mock.web.MockHttpServletRequest
+import org.springframework.mock.web.MockHttpServletResponse
+import org.springframework.security.web.FilterInvocation
+import spock.lang.Specification
+
+import java.util.concurrent.Executor
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+
+class SecurityInvalidatorTest extends Specification {
+
+    def broker = new LocalMessageBroker()
+
+    def node(List<SecurityChangedEvent> events, Executor executor = { it.run() } as Executor) {
+        def invalidator = new SecurityInvalidator()
+        invalidator.messageBroker = broker
+        invalidator.publisher = { events << it } as ApplicationEventPublisher
+        invalidator.executor = executor
+        invalidator.subscribe()
+        invalidator
+    }
+
+    def "a change on one node is rebuilt locally and on the other nodes"() {
+        given:
+        def localEvents = []
+        def remoteEvents = []
+        def local = node(localEvents)
+        node(remoteEvents)
+
+        when:
+        local.invalidate("update Permission")
+
+        then:
+        localEvents.size() == 1
+        !localEvents[0].remote
+        remoteEvents.size() == 1
+        remoteEvents[0].remote
+        remoteEvents[0].reason == "update Permission"
+    }
+
+    def "a burst of changes collapses into one rebuild"() {
+        given:
+        def events = []
+        def queued = []
+        def invalidator = node(events, { queued << it } as Executor)
+
+        when:
+        100.times { invalidator.invalidate("insert RolePermission") }
+        queued.each { it.run() }
+
+        then:
+        queued.size() == 1
+        events.size() == 1
+    }
+
+    def "metadata source swaps in reloaded permissions"() {
+        given:
+        def permissions = [new Permission().setAuthKey("Index role").setHttpMethod("GET").setAuthUris("/v[\\d]+/role")]
+        def permissionDao = Mock(PermissionDao) {
+            findAll() >> { permissions }
+        }
+        def source = new MyInvocationSecurityMetadataSourceService()
+        source.permissionDao = permissionDao
+        source.loadPermissions()
+        def invocation = new FilterInvocation(new MockHttpServletRequest("GET", "/v1/user"), new MockHttpServletResponse(), {} as javax.servlet.FilterChain)
+
+        expect:
+        source.getAttributes(invocation) == null
+
+        when:
+        permissions = permissions + new Permission().setAuthKey("Index user").setHttpMethod("GET").setAuthUris("/v[\\d]+/user")
+        source.onSecurityChanged(new SecurityChangedEvent(this, "insert Permission", true))
+
+        then:
+        source.getAttributes(invocation)*.attribute == ["Index user"]
+    }
+
+    def "requests matched while permissions reload are always protected"() {
+        given:
+        def permissionDao = Mock(PermissionDao) {
+            findAll() >> {
+                (1..50).collect { new Permission().setAuthKey("Index entity-" + it).setHttpMethod("GET").setAuthUris("/v[\\d]+/entity-" + it) } +
+                        new Permission().setAuthKey("Index role").setHttpMethod("GET").setAuthUris("/v[\\d]+/role")
+            }
+        }
+        def source = new MyInvocationSecurityMetadataSourceService()
+        source.permissionDao = permissionDao
+        source.loadPermissions()
+        def invocation = new FilterInvocation(new MockHttpServletRequest("GET", "/v1/role"), new MockHttpServletResponse(), {} as javax.servlet.FilterChain)
+        def running = new AtomicBoolean(true)
+        def reloads = new AtomicInteger()
+        def reloader = Thread.start {
+            while (running.get()) {
+                source.onSecurityChanged(new SecurityChangedEvent(this, "update Permission", true))
+                reloads.incrementAndGet()
+            }
+        }
+
+        when:
+        def unprotected = 0
+        def deadline = System.currentTimeMillis() + 1000
+        while (System.currentTimeMillis() < deadline || reloads.get() < 100) {
+            if (source.getAttributes(invocation)*.attribute != ["Index role"]) {
+                unprotected++
+            }
+        }
+        running.set(false)
+        reloader.join()
+
+        then:
+        reloads.get() >= 100
+        unprotected == 0
+    }
+}
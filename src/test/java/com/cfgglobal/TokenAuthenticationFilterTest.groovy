@@ -0,0 +1,38 @@
+package com.cfgglobal
+
+import com.cfgglobal.test.config.app.ApplicationProperties
+import com.cfgglobal.test.security.TokenAuthenticationFilter
+import org.springframework.mock.web.MockHttpServletRequest
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class TokenAuthenticationFilterTest extends Specification {
+
+    def filter = new TokenAuthenticationFilter()
+
+    @Unroll
+    def "#path is anonymous under /sys/**: #skipped"() {
+        given:
+        def properties = new ApplicationProperties()
+        properties.jwt = new ApplicationProperties.Jwt(anonymousUrls: "/sys/**")
+        filter.applicationProperties = properties
+        def request = new MockHttpServletRequest(method, path)
+        request.servletPath = path
+
+        expect:
+        filter.skipPathRequest(request) == skipped
+
+        where:
+        method | path                          || skipped
+        "GET"  | "/sys/metrics"                || true
+        "GET"  | "/sys/metrics/resources"      || false
+        "POST" | "/sys/metrics/resources"      || false
+        "POST" | "/sys/metrics/resources/"     || false
+        "POST" | "/sys/metrics/resources.json" || false
+        "POST" | "/sys/profile/start"          || false
+        "POST" | "/sys/profile"                || false
+        "POST" | "/sys/profile/"               || false
+        "POST" | "/sys/profile.json"           || false
+        "GET"  | "/sys/profile.json"           || false
+    }
+}
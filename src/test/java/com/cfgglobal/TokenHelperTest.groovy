@@ -0,0 +1,73 @@
+package com.cfgglobal
+
+import com.cfgglobal.test.config.app.ApplicationProperties
+import com.cfgglobal.test.security.TokenHelper
+import io.jsonwebtoken.Jwts
+import io.jsonwebtoken.SignatureAlgorithm
+import org.springframework.security.core.userdetails.UserDetailsService
+import spock.lang.Specification
+
+class TokenHelperTest extends Specification {
+
+    def tokenHelper = new TokenHelper()
+
+    def setup() {
+        tokenHelper.applicationProperties = new ApplicationProperties().setJwt(new ApplicationProperties.Jwt())
+        tokenHelper.userDetailsService = Mock(UserDetailsService)
+        tokenHelper.@APP_NAME = "access-control"
+        tokenHelper.initClaimsCache()
+    }
+
+    def "a token is verified once and then served from the cache"() {
+        given:
+        def token = tokenHelper.generateToken("admin")
+
+        when:
+        def usernames = (1..5).collect { tokenHelper.getUsernameFromToken(token) }
+
+        then:
+        usernames.every { it == "admin" }
+        tokenHelper.claimsCacheStats().missCount() == 1
+        tokenHelper.claimsCacheStats().hitCount() == 4
+    }
+
+    def "cached claims are not served after the token expires"() {
+        given:
+        def secret = tokenHelper.applicationProperties.jwt.secret
+        def token = Jwts.builder().setSubject("admin")
+                .setExpiration(new Date(System.currentTimeMillis() + 1000))
+                .signWith(SignatureAlgorithm.HS512, secret).compact()
+
+        expect:
+        tokenHelper.getUsernameFromToken(token) == "admin"
+
+        when:
+        sleep(1100)
+
+        then:
+        tokenHelper.getUsernameFromToken(token) == null
+        !tokenHelper.canTokenBeRefreshed(token)
+    }
+
+    def "refreshing does not change the cached claims"() {
+        given:
+        def token = tokenHelper.generateToken("admin")
+        tokenHelper.getUsernameFromToken(token)
+        sleep(1000)
+
+        when:
+        def refreshed = tokenHelper.refreshToken(token)
+
+        then:
+        refreshed != token
+        tokenHelper.getUsernameFromToken(refreshed) == "admin"
+        tokenHelper.refreshToken(token) != null
+    }
+
+    def "invalid tokens are rejected and not cached"() {
+        expect:
+        tokenHelper.getUsernameFromToken("not-a-token") == null
+        tokenHelper.getUsernameFromToken(null) == null
+        tokenHelper.claimsCacheStats().hitCount() == 0
+    }
+}
@@ -0,0 +1,88 @@
+package com.cfgglobal
+
+import com.cfgglobal.test.config.ActionReportProperties
+import com.cfgglobal.test.domain.User
+import com.cfgglobal.test.domain.VisitRecord
+import com.cfgglobal.test.service.VisitRecordWriter
+import org.springframework.jdbc.core.JdbcTemplate
+import org.springframework.jdbc.datasource.DriverManagerDataSource
+import spock.lang.Specification
+
+class VisitRecordWriterTest extends Specification {
+
+    def properties = new ActionReportProperties()
+
+    def jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:visit-record;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", ""))
+
+    def setup() {
+        jdbcTemplate.execute("drop table if exists visit_record")
+        jdbcTemplate.execute("""create table visit_record (id bigint auto_increment primary key, version bigint,
+                created_at timestamp default current_timestamp, updated_at timestamp default current_timestamp,
+                creator_id bigint, modifier_id bigint, ip varchar(255), uri varchar(255), method varchar(255),
+                query_string varchar(1024), request_body varchar(2048), execution_time bigint, status int,
+                allocated_bytes bigint, cpu_time bigint)""")
+    }
+
+    def writer() {
+        def writer = new VisitRecordWriter()
+        writer.actionReportProperties = properties
+        writer.jdbcTemplate = jdbcTemplate
+        writer
+    }
+
+    static VisitRecord record(int status = 200, long executionTime = 0) {
+        new VisitRecord().setIp("127.0.0.1").setMethod("GET").setUri("/v1/role").setStatus(status).setExecutionTime(executionTime)
+    }
+
+    def "slow and failed requests are kept when the rest is sampled out"() {
+        given:
+        properties.visitRecordSampleRate = 0
+        def writer = writer()
+        writer.open()
+
+        expect:
+        !writer.offer(record())
+        writer.offer(record(500))
+        writer.offer(record(200, 3000))
+        writer.stats().sampledOut == 1
+        writer.stats().queueDepth == 2
+    }
+
+    def "normal requests leave a quarter of the buffer to slow and failed ones"() {
+        given:
+        properties.visitRecordBufferSize = 8
+        def writer = writer()
+        writer.open()
+
+        when:
+        def normal = (1..8).count { writer.offer(record()) }
+        def failed = (1..8).count { writer.offer(record(503)) }
+
+        then:
+        normal == 6
+        failed == 2
+        writer.stats().dropped == 8
+    }
+
+    def "buffered records are written in batches"() {
+        given:
+        properties.visitRecordBatchSize = 50
+        properties.visitRecordFlushInterval = 50
+        def writer = writer()
+        writer.start()
+
+        when:
+        120.times { writer.offer(record().setCreator(new User().setId(7L)).setRequestBody("x" * 3000)) }
+        writer.stop()
+
+        then:
+        jdbcTemplate.queryForObject("select count(*) from visit_record where creator_id = 7", Long) == 120
+        jdbcTemplate.queryForObject("select max(length(request_body)) from visit_record", Integer) == 2048
+        with(writer.stats()) {
+            written == 120
+            failed == 0
+            queueDepth == 0
+            flushCount >= 3
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.cfgglobal
+
+import com.cfgglobal.test.config.ActionReportProperties
+import com.cfgglobal.test.config.app.ApplicationProperties
+import com.cfgglobal.test.domain.User
+import com.cfgglobal.test.domain.VisitRecord
+import com.cfgglobal.test.domain.VisitRollup
+import com.cfgglobal.test.enums.RollupPeriod
+import com.cfgglobal.test.service.VisitRollupAggregator
+import org.springframework.boot.orm.jpa.hibernate.SpringImplicitNamingStrategy
+import org.springframework.boot.orm.jpa.hibernate.SpringPhysicalNamingStrategy
+import org.springframework.jdbc.core.JdbcTemplate
+import org.springframework.jdbc.datasource.DataSourceTransactionManager
+import org.springframework.jdbc.datasource.DriverManagerDataSource
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter
+import spock.lang.Shared
+import spock.lang.Specification
+
+import javax.persistence.EntityManagerFactory
+import java.sql.Timestamp
+import java.util.concurrent.TimeUnit
+import java.util.function.LongSupplier
+
+/**
+ * Writes rollups into the schema Hibernate generates for the entities, with the naming of the application.
+ */
+class VisitRollupTest extends Specification {
+
+    static final long MINUTE = TimeUnit.MINUTES.toMillis(1)
+
+    @Shared
+    EntityManagerFactory entityManagerFactory
+
+    @Shared
+    JdbcTemplate jdbcTemplate
+
+    @Shared
+    DataSourceTransactionManager transactionManager
+
+    def properties = new ActionReportProperties()
+
+    long now = TimeUnit.HOURS.toMillis(420000)
+
+    VisitRollupAggregator aggregator
+
+    def setupSpec() {
+        ApplicationProperties.enums = []
+        def dataSource = new DriverManagerDataSource("jdbc:h2:mem:visit-rollup;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "")
+        def factory = new LocalContainerEntityManagerFactoryBean(
+                dataSource: dataSource,
+                packagesToScan: ["com.cfgglobal.test.domain"] as String[],
+                jpaVendorAdapter: new HibernateJpaVendorAdapter())
+        factory.jpaPropertyMap = ["hibernate.hbm2ddl.auto"              : "create-drop",
+                                  "hibernate.physical_naming_strategy": SpringPhysicalNamingStrategy.name,
+                                  "hibernate.implicit_naming_strategy": SpringImplicitNamingStrategy.name,
+                                  "hibernate.id.new_generator_mappings": "false"]
+        factory.afterPropertiesSet()
+        entityManagerFactory = factory.object
+        jdbcTemplate = new JdbcTemplate(dataSource)
+        transactionManager = new DataSourceTransactionManager(dataSource)
+    }
+
+    def cleanupSpec() {
+        entityManagerFactory?.close()
+    }
+
+    def setup() {
+        jdbcTemplate.execute("delete from visit_rollup")
+        jdbcTemplate.execute("delete from visit_record")
+        aggregator = new VisitRollupAggregator({ now } as LongSupplier)
+        aggregator.actionReportProperties = properties
+        aggregator.jdbcTemplate = jdbcTemplate
+        aggregator.transactionManager = transactionManager
+    }
+
+    static VisitRecord visit(String uri, int status = 200, Long userId = null) {
+        new VisitRecord().setIp("10.0.0.1").setMethod("GET").setUri(uri).setStatus(status)
+                .setCreator(userId == null ? null : new User().setId(userId))
+    }
+
+    List<VisitRollup> rollups(RollupPeriod period) {
+        def entityManager = entityManagerFactory.createEntityManager()
+        try {
+            entityManager.createQuery("from VisitRollup where period = :period order by periodStart", VisitRollup)
+                    .setParameter("period", period).resultList
+        } finally {
+            entityManager.close()
+        }
+    }
+
+    def "ended minutes are added to their minute and hour rows"() {
+        when: "two minutes of one endpoint, and a minute still running"
+        100.times { aggregator.record(visit("/v1/role/" + it, it < 2 ? 500 : 200, 7L), null, it < 90 ? 20 : 800) }
+        now += MINUTE
+        50.times { aggregator.record(visit("/v1/role/" + it), "/v1/role/{id}", 3) }
+        now += MINUTE
+        aggregator.record(visit("/v1/role/1"), null, 3)
+        aggregator.flush(now + 10000)
+
+        then:
+        def minutes = rollups(RollupPeriod.MINUTE)
+        minutes*.uriTemplate == ["/v1/role/{id}", "/v1/role/{id}"]
+        minutes*.userId == [7L, 0L]
+        minutes[0].requestCount == 100
+        minutes[0].errorCount == 2
+        minutes[0].latencyP50 == 50
+        minutes[0].latencyP99 == 800
+        minutes[0].latencyMax == 800
+
+        def hours = rollups(RollupPeriod.HOUR)
+        hours.size() == 2
+        hours.sum { it.requestCount } == 150
+
+        when: "the running minute ends, on another node"
+        def other = new VisitRollupAggregator({ now } as LongSupplier)
+        other.jdbcTemplate = jdbcTemplate
+        other.transactionManager = transactionManager
+        other.record(visit("/v1/role/2"), null, 3)
+        aggregator.flush(now + MINUTE + 10000)
+        other.flush(now + MINUTE + 10000)
+
+        then:
+        rollups(RollupPeriod.MINUTE).last().requestCount == 2
+        rollups(RollupPeriod.HOUR).find { it.userId == 0 }.requestCount == 52
+    }
+
+    def "a row another node inserts while this node writes is counted once"() {
+        given: "a node that writes the same minute right after this node's first statement"
+        def other = new VisitRollupAggregator({ now } as LongSupplier)
+        other.jdbcTemplate = jdbcTemplate
+        other.transactionManager = transactionManager
+        other.record(visit("/v1/role", 200, 7L), null, 3)
+        def racing = new JdbcTemplate(jdbcTemplate.dataSource) {
+            boolean raced
+
+            @Override
+            int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+                def updated = super.batchUpdate(sql, batchArgs)
+                if (!raced) {
+                    raced = true
+                    other.flush(now + MINUTE + 10000)
+                }
+                updated
+            }
+        }
+        aggregator.jdbcTemplate = racing
+        aggregator.record(visit("/v1/role", 200, 7L), null, 3)
+        aggregator.record(visit("/v1/role", 200, 8L), null, 3)
+
+        when:
+        aggregator.flush(now + MINUTE + 10000)
+
+        then:
+        rollups(RollupPeriod.MINUTE).collectEntries { [it.userId, it.requestCount] } == [7L: 2L, 8L: 1L]
+        rollups(RollupPeriod.HOUR).collectEntries { [it.userId, it.requestCount] } == [7L: 2L, 8L: 1L]
+    }
+
+    def "requests with methods outside the standard ones are counted as one method"() {
+        when:
+        aggregator.record(visit("/v1/role").setMethod("X-A-VERY-LONG-CUSTOM-METHOD"), null, 1)
+        aggregator.record(visit("/v1/role").setMethod("PROPFIND"), null, 1)
+        aggregator.record(visit("/v1/role"), null, 1)
+        aggregator.flush(now + MINUTE + 10000)
+
+        then:
+        rollups(RollupPeriod.MINUTE).collectEntries { [it.method, it.requestCount] } == [GET: 1L, OTHER: 2L]
+    }
+
+    def "rows the table refuses are dropped instead of holding back the others"() {
+        given:
+        jdbcTemplate.execute("alter table visit_rollup add constraint ck_refused check (uri_template <> '/refused')")
+
+        when:
+        aggregator.record(visit("/refused"), null, 1)
+        aggregator.record(visit("/v1/role"), null, 1)
+        aggregator.flush(now + MINUTE + 10000)
+        aggregator.flush(now + 2 * MINUTE + 10000)
+
+        then:
+        rollups(RollupPeriod.MINUTE)*.uriTemplate == ["/v1/role"]
+        rollups(RollupPeriod.HOUR)*.uriTemplate == ["/v1/role"]
+        aggregator.minutes.isEmpty()
+
+        cleanup:
+        jdbcTemplate.execute("alter table visit_rollup drop constraint ck_refused")
+    }
+
+    def "raw records and rollups are purged after their retention"() {
+        given:
+        properties.visitRecordRetention = 30
+        properties.visitRollupMinuteRetention = 7
+        def day = TimeUnit.DAYS.toMillis(1)
+        [1, 29, 31, 40].each { age ->
+            jdbcTemplate.update("insert into visit_record (uri, version, created_at) values (?, 0, ?)", "/v1/role", new Timestamp(now - age * day))
+            aggregator.record(visit("/v1/role"), null, 1)
+        }
+        aggregator.flush(now + MINUTE + 10000)
+        jdbcTemplate.update("update visit_rollup set period_start = ?", new Timestamp(now - 8 * day))
+
+        when:
+        aggregator.purge(now)
+
+        then:
+        jdbcTemplate.queryForObject("select count(*) from visit_record", Long) == 2
+        rollups(RollupPeriod.MINUTE).empty
+        rollups(RollupPeriod.HOUR).size() == 1
+    }
+
+    def "raw records are kept unless the application sets a retention"() {
+        given:
+        jdbcTemplate.update("insert into visit_record (uri, version, created_at) values (?, 0, ?)", "/v1/role", new Timestamp(now - TimeUnit.DAYS.toMillis(400)))
+
+        when:
+        aggregator.purge(now)
+
+        then:
+        jdbcTemplate.queryForObject("select count(*) from visit_record", Long) == 1
+    }
+}